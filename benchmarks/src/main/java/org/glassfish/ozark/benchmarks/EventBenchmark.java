@@ -0,0 +1,138 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.benchmarks;
+
+import org.glassfish.ozark.cdi.OzarkCdiExtension;
+import org.glassfish.ozark.event.MvcEventImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.mvc.event.AfterControllerEvent;
+import javax.mvc.event.AfterProcessViewEvent;
+import javax.mvc.event.BeforeControllerEvent;
+import javax.mvc.event.BeforeProcessViewEvent;
+import javax.mvc.event.ControllerRedirectEvent;
+import javax.mvc.event.MvcEvent;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Measures the per-request cost of MVC events with many concurrent request threads.
+ * Each {@code lookups} call checks whether the event types are observed as often as
+ * the filters and the view writer do for a request, and each {@code create} call builds
+ * an event. The {@code legacy} benchmarks use a synchronized set and a formatted date
+ * as event ID, as done before events were looked up without locking:</p>
+ *
+ * <pre>
+ * mvn -Pbenchmarks -pl ozark,benchmarks -am package -DskipTests
+ * java -jar benchmarks/target/benchmarks.jar EventBenchmark -t 32
+ * </pre>
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(32)
+@Fork(1)
+public class EventBenchmark {
+
+    private static final Set<Class<? extends MvcEvent>> LEGACY_OBSERVED = new HashSet<>();
+
+    @Setup
+    public void setup() {
+        OzarkCdiExtension.addObservedEvent(AfterProcessViewEvent.class);
+        legacyAddObservedEvent(AfterProcessViewEvent.class);
+    }
+
+    private static synchronized void legacyAddObservedEvent(Class<? extends MvcEvent> eventType) {
+        LEGACY_OBSERVED.add(eventType);
+    }
+
+    private static synchronized boolean legacyIsEventObserved(Class<? extends MvcEvent> eventType) {
+        return LEGACY_OBSERVED.contains(eventType);
+    }
+
+    @Benchmark
+    public int lookups() {
+        int observed = 0;
+        if (OzarkCdiExtension.isEventObserved(BeforeControllerEvent.class)) observed++;
+        if (OzarkCdiExtension.isEventObserved(AfterControllerEvent.class)) observed++;
+        if (OzarkCdiExtension.isEventObserved(ControllerRedirectEvent.class)) observed++;
+        if (OzarkCdiExtension.isEventObserved(BeforeProcessViewEvent.class)) observed++;
+        if (OzarkCdiExtension.isEventObserved(AfterProcessViewEvent.class)) observed++;
+        return observed;
+    }
+
+    @Benchmark
+    public int legacyLookups() {
+        int observed = 0;
+        if (legacyIsEventObserved(BeforeControllerEvent.class)) observed++;
+        if (legacyIsEventObserved(AfterControllerEvent.class)) observed++;
+        if (legacyIsEventObserved(ControllerRedirectEvent.class)) observed++;
+        if (legacyIsEventObserved(BeforeProcessViewEvent.class)) observed++;
+        if (legacyIsEventObserved(AfterProcessViewEvent.class)) observed++;
+        return observed;
+    }
+
+    @Benchmark
+    public String create() {
+        return new MvcEventImpl().getId();
+    }
+
+    @Benchmark
+    public String legacyCreate() {
+        return new SimpleDateFormat("yyyy.MM.dd.HH.mm.ss").format(new Date());
+    }
+}
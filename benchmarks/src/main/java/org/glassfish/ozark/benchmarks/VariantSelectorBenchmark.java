@@ -0,0 +1,149 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.benchmarks;
+
+import org.glassfish.ozark.jersey.VariantSelector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.Produces;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Variant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Measures content negotiation for controllers that return void and declare their
+ * view using {@link javax.mvc.annotation.View}. Requests cycle through headers sent by
+ * current desktop and mobile browsers.</p>
+ *
+ * <p>The {@code memoized} benchmark uses the pre-built variants of a controller method,
+ * as done by {@link org.glassfish.ozark.core.ViewResponseFilter}. The {@code uncached}
+ * benchmark parses the request headers and runs the full selection on each call:</p>
+ *
+ * <pre>
+ * mvn -Pbenchmarks -pl ozark,benchmarks -am package -DskipTests
+ * java -jar benchmarks/target/benchmarks.jar VariantSelectorBenchmark -prof gc
+ * </pre>
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VariantSelectorBenchmark {
+
+    private static final String[][] BROWSERS = {
+            // Chrome
+            { "text/html,application/xhtml+xml,application/xml;q=0.9,image/avif,image/webp,image/apng,*/*;q=0.8,"
+                    + "application/signed-exchange;v=b3;q=0.7",
+              "en-US,en;q=0.9", null, "gzip, deflate, br, zstd" },
+            // Firefox
+            { "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8",
+              "de,en-US;q=0.7,en;q=0.3", null, "gzip, deflate, br" },
+            // Safari
+            { "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8",
+              "fr-FR,fr;q=0.9", null, "gzip, deflate, br" },
+            // Mobile Chrome
+            { "text/html,application/xhtml+xml,application/xml;q=0.9,image/webp,image/apng,*/*;q=0.8",
+              "es-ES,es;q=0.9,en;q=0.8", null, "gzip, deflate" },
+    };
+
+    private HttpServletRequest[] requests;
+
+    private List<Variant> variants;
+
+    private ResourceInfo resourceInfo;
+
+    private int next;
+
+    @Produces({MediaType.TEXT_HTML, MediaType.APPLICATION_XHTML_XML})
+    public void controller() {
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        requests = new HttpServletRequest[BROWSERS.length];
+        for (int i = 0; i < BROWSERS.length; i++) {
+            final Map<String, String> headers = new HashMap<>();
+            headers.put(HttpHeaders.ACCEPT, BROWSERS[i][0]);
+            headers.put(HttpHeaders.ACCEPT_LANGUAGE, BROWSERS[i][1]);
+            headers.put(HttpHeaders.ACCEPT_CHARSET, BROWSERS[i][2]);
+            headers.put(HttpHeaders.ACCEPT_ENCODING, BROWSERS[i][3]);
+            requests[i] = Stubs.request(headers);
+        }
+        variants = Variant.mediaTypes(MediaType.TEXT_HTML_TYPE, MediaType.APPLICATION_XHTML_XML_TYPE).build();
+        final Map<String, Object> info = new HashMap<>();
+        info.put("getResourceMethod", VariantSelectorBenchmark.class.getMethod("controller"));
+        info.put("getResourceClass", VariantSelectorBenchmark.class);
+        resourceInfo = Stubs.stub(ResourceInfo.class, info);
+    }
+
+    private HttpServletRequest nextRequest() {
+        next = (next + 1) % requests.length;
+        return requests[next];
+    }
+
+    @Benchmark
+    public MediaType memoized() {
+        return VariantSelector.selectVariant(nextRequest(), variants);
+    }
+
+    @Benchmark
+    public MediaType uncached() {
+        return VariantSelector.selectVariant(nextRequest(), resourceInfo);
+    }
+}
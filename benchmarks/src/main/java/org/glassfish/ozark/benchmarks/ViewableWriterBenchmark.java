@@ -0,0 +1,231 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.benchmarks;
+
+import org.glassfish.ozark.core.ModelsImpl;
+import org.glassfish.ozark.core.ViewableWriter;
+import org.glassfish.ozark.engine.ViewEngineContextImpl;
+import org.glassfish.ozark.engine.ViewEngineFinder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.mvc.Viewable;
+import javax.mvc.engine.ViewEngine;
+import javax.mvc.engine.ViewEngineContext;
+import javax.mvc.engine.ViewEngineException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Configuration;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.annotation.Annotation;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Measures the cost of passing a view through {@link ViewableWriter}, excluding the
+ * template engine itself. The engine used writes a small page through the response
+ * writer in many short writes, as template engines do.</p>
+ *
+ * <p>The {@code legacy} benchmark reproduces the per-request pipeline that was used before
+ * the render objects were recycled: a byte-at-a-time servlet stream, a new encoder,
+ * print writer and response wrapper, and a charset lookup. Run with {@code -prof gc}
+ * to compare allocation rates:</p>
+ *
+ * <pre>
+ * mvn -Pbenchmarks -pl ozark,benchmarks -am package -DskipTests
+ * java -jar benchmarks/target/benchmarks.jar ViewableWriterBenchmark -prof gc
+ * </pre>
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ViewableWriterBenchmark {
+
+    private static final MediaType HTML_UTF8 = MediaType.valueOf("text/html;charset=UTF-8");
+
+    private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+    private ViewableWriter writer;
+
+    private ViewEngine engine;
+
+    private Viewable viewable;
+
+    private MultivaluedMap<String, Object> headers;
+
+    private HttpServletRequest request;
+
+    private HttpServletResponse response;
+
+    private ResourceInfo resourceInfo;
+
+    private Configuration config;
+
+    private final OutputStream out = new Stubs.NullOutputStream();
+
+    /**
+     * A view engine that writes a page of about 10KB in small chunks.
+     */
+    public static class PageEngine implements ViewEngine {
+
+        @Override
+        public boolean supports(String view) {
+            return true;
+        }
+
+        @Override
+        public void processView(ViewEngineContext context) throws ViewEngineException {
+            try {
+                final PrintWriter w = context.getResponse().getWriter();
+                w.write("<html><head><title>Catalog</title></head><body><ul>");
+                for (int i = 0; i < 200; i++) {
+                    w.write("<li class=\"item\">");
+                    w.write("Product ");
+                    w.print(i);
+                    w.write(" \u2014 in stock</li>\n");
+                }
+                w.write("</ul></body></html>");
+            } catch (IOException e) {
+                throw new ViewEngineException(e);
+            }
+        }
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        engine = new PageEngine();
+        request = Stubs.stub(HttpServletRequest.class, Collections.emptyMap());
+        response = Stubs.stub(HttpServletResponse.class, Collections.emptyMap());
+        config = Stubs.stub(Configuration.class, Collections.emptyMap());
+        final Map<String, Object> info = new HashMap<>();
+        info.put("getResourceMethod", Object.class.getMethod("toString"));
+        info.put("getResourceClass", Object.class);
+        resourceInfo = Stubs.stub(ResourceInfo.class, info);
+
+        writer = new ViewableWriter();
+        Stubs.inject(writer, "engineFinder", new ViewEngineFinder() {
+            @Override
+            public ViewEngine find(Viewable viewable) {
+                return engine;
+            }
+        });
+        Stubs.inject(writer, "request", request);
+        Stubs.inject(writer, "response", response);
+        Stubs.inject(writer, "resourceInfo", resourceInfo);
+        Stubs.inject(writer, "config", config);
+
+        viewable = new Viewable("catalog.html");
+        viewable.setModels(new ModelsImpl());
+        headers = new MultivaluedHashMap<>();
+        headers.putSingle(ViewableWriter.CONTENT_TYPE, HTML_UTF8);
+    }
+
+    @Benchmark
+    public void viewableWriter() throws IOException {
+        writer.writeTo(viewable, Viewable.class, Viewable.class, NO_ANNOTATIONS, HTML_UTF8, headers, out);
+    }
+
+    @Benchmark
+    public void legacy() throws Exception {
+        final ServletOutputStream responseStream = new ServletOutputStream() {
+            @Override
+            public void write(final int b) throws IOException {
+                out.write(b);
+            }
+
+            @Override
+            public boolean isReady() {
+                return false;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                throw new UnsupportedOperationException("Not supported");
+            }
+        };
+        final MediaType mt = (MediaType) headers.get(ViewableWriter.CONTENT_TYPE).get(0);
+        final String charset = mt.getParameters().get(MediaType.CHARSET_PARAMETER);
+        final PrintWriter responseWriter = new PrintWriter(new OutputStreamWriter(responseStream,
+                charset != null ? Charset.forName(charset) : ViewableWriter.UTF8));
+        final HttpServletResponse responseWrapper = new HttpServletResponseWrapper(response) {
+            @Override
+            public ServletOutputStream getOutputStream() throws IOException {
+                return responseStream;
+            }
+
+            @Override
+            public PrintWriter getWriter() throws IOException {
+                return responseWriter;
+            }
+        };
+        try {
+            engine.processView(new ViewEngineContextImpl(viewable.getView(), viewable.getModels(), request,
+                    responseWrapper, null, resourceInfo, config));
+        } finally {
+            responseWriter.flush();
+        }
+    }
+}
@@ -39,6 +39,7 @@
  */
 package org.glassfish.ozark.ext.asciidoc;
 
+import org.glassfish.ozark.annotation.ViewSuffix;
 import org.glassfish.ozark.engine.ViewEngineBase;
 import org.asciidoctor.Asciidoctor;
 import org.asciidoctor.Asciidoctor.Factory;
@@ -62,6 +63,7 @@ import java.util.HashMap;
  * @author Ricardo Arguello
  */
 @ApplicationScoped
+@ViewSuffix({".adoc", ".asciidoc"})
 public class AsciiDocViewEngine extends ViewEngineBase {
 
     private final Asciidoctor asciidoctor;
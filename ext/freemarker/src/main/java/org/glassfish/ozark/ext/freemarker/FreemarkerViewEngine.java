@@ -39,6 +39,7 @@
  */
 package org.glassfish.ozark.ext.freemarker;
 
+import org.glassfish.ozark.annotation.ViewSuffix;
 import org.glassfish.ozark.engine.ViewEngineBase;
 import org.glassfish.ozark.engine.ViewEngineConfig;
 import freemarker.template.Configuration;
@@ -58,6 +59,7 @@ import java.io.OutputStreamWriter;
  * @author Santiago Pericas-Geertsen
  */
 @ApplicationScoped
+@ViewSuffix(".ftl")
 public class FreemarkerViewEngine extends ViewEngineBase {
 
     @Inject
@@ -41,6 +41,7 @@ package org.glassfish.ozark.ext.handlebars;
 
 import com.github.jknack.handlebars.Handlebars;
 import com.github.jknack.handlebars.Template;
+import org.glassfish.ozark.annotation.ViewSuffix;
 import org.glassfish.ozark.engine.ViewEngineBase;
 import org.glassfish.ozark.engine.ViewEngineConfig;
 
@@ -59,6 +60,7 @@ import java.util.stream.Collectors;
  * @author Rahman Usta
  */
 @ApplicationScoped
+@ViewSuffix({".hbs", ".handlebars"})
 public class HandlebarsViewEngine extends ViewEngineBase {
 
     @Inject
@@ -41,6 +41,7 @@ package org.glassfish.ozark.ext.jade;
 
 import de.neuland.jade4j.JadeConfiguration;
 import de.neuland.jade4j.exceptions.JadeException;
+import org.glassfish.ozark.annotation.ViewSuffix;
 import org.glassfish.ozark.engine.ViewEngineBase;
 import org.glassfish.ozark.engine.ViewEngineConfig;
 
@@ -58,6 +59,7 @@ import java.io.IOException;
  * @see <a href="https://github.com/neuland/jade4j">Jade4J</a>
  */
 @ApplicationScoped
+@ViewSuffix(".jade")
 public class JadeViewEngine extends ViewEngineBase {
 
     @Inject
@@ -41,6 +41,7 @@ package org.glassfish.ozark.ext.mustache;
 
 import com.github.mustachejava.Mustache;
 import com.github.mustachejava.MustacheFactory;
+import org.glassfish.ozark.annotation.ViewSuffix;
 import org.glassfish.ozark.engine.ViewEngineBase;
 import org.glassfish.ozark.engine.ViewEngineConfig;
 
@@ -57,6 +58,7 @@ import java.io.Writer;
  * @author Rodrigo Turini
  */
 @ApplicationScoped
+@ViewSuffix(".mustache")
 public class MustacheViewEngine extends ViewEngineBase {
 
     @Inject
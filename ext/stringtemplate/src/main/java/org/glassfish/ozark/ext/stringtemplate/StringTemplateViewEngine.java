@@ -39,6 +39,7 @@
  */
 package org.glassfish.ozark.ext.stringtemplate;
 
+import org.glassfish.ozark.annotation.ViewSuffix;
 import org.glassfish.ozark.engine.ViewEngineBase;
 import org.stringtemplate.v4.*;
 
@@ -57,6 +58,7 @@ import static java.util.regex.Pattern.compile;
  * @author Rodrigo Turini
  */
 @ApplicationScoped
+@ViewSuffix(".st")
 public class StringTemplateViewEngine extends ViewEngineBase {
 
 	@Inject
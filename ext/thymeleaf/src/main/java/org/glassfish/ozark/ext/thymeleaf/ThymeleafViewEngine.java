@@ -39,6 +39,7 @@
  */
 package org.glassfish.ozark.ext.thymeleaf;
 
+import org.glassfish.ozark.annotation.ViewSuffix;
 import org.glassfish.ozark.engine.ViewEngineBase;
 import org.glassfish.ozark.engine.ViewEngineConfig;
 import org.thymeleaf.TemplateEngine;
@@ -59,6 +60,7 @@ import java.io.IOException;
  * @author Rodrigo Turini
  */
 @ApplicationScoped
+@ViewSuffix(".html")
 public class ThymeleafViewEngine extends ViewEngineBase {
 
 	@Inject
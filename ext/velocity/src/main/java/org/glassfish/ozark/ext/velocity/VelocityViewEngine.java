@@ -39,6 +39,7 @@
  */
 package org.glassfish.ozark.ext.velocity;
 
+import org.glassfish.ozark.annotation.ViewSuffix;
 import org.glassfish.ozark.engine.ViewEngineBase;
 import org.glassfish.ozark.engine.ViewEngineConfig;
 import org.apache.velocity.Template;
@@ -57,6 +58,7 @@ import java.io.IOException;
  * @author Rodrigo Turini
  */
 @ApplicationScoped
+@ViewSuffix(".vm")
 public class VelocityViewEngine extends ViewEngineBase {
 
     @Inject
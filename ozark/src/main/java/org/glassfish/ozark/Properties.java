@@ -52,4 +52,151 @@ public interface Properties {
      * redirect scope.
      */
     String REDIRECT_SCOPE_COOKIES = "org.glassfish.ozark.redirectScopeCookies";
+
+    /**
+     * String property that selects where redirect scopes are stored: {@code "session"}
+     * in the HTTP session, {@code "local"} in memory on the local node without
+     * creating a session, or {@code "cookie"} in the redirect cookie itself, see
+     * {@link org.glassfish.ozark.cdi.CookieRedirectScopeStore}. Defaults to
+     * {@code "session"}. Ignored if the application provides a
+     * {@link org.glassfish.ozark.cdi.RedirectScopeStore} bean.
+     */
+    String REDIRECT_SCOPE_STORE = "org.glassfish.ozark.redirectScopeStore";
+
+    /**
+     * String property with the secret used to sign, and optionally encrypt, redirect
+     * scopes carried in cookies. Must be the same on all nodes. A random secret is
+     * generated on each node if not set.
+     */
+    String REDIRECT_SCOPE_SECRET = "org.glassfish.ozark.redirectScopeSecret";
+
+    /**
+     * Boolean property that when set to {@code true} indicates Ozark to encrypt
+     * redirect scopes carried in cookies, in addition to signing them.
+     */
+    String REDIRECT_SCOPE_ENCRYPT = "org.glassfish.ozark.redirectScopeEncrypt";
+
+    /**
+     * Integer property that sets the time to live in seconds of redirect scopes kept
+     * in memory, and the maximum age of redirect scope cookies. Defaults to 600.
+     */
+    String REDIRECT_SCOPE_TTL = "org.glassfish.ozark.redirectScopeTtl";
+
+    /**
+     * Integer property that sets the maximum number of redirect scopes stored in an
+     * HTTP session. The oldest scopes are destroyed when a new scope would exceed it.
+     * Defaults to 10.
+     */
+    String REDIRECT_SCOPE_MAX_SCOPES = "org.glassfish.ozark.redirectScopeMaxScopes";
+
+    /**
+     * Integer property that sets the size in bytes of the buffer used to forward
+     * the output of a view engine to the response. A value of zero disables
+     * buffering. Defaults to 8192.
+     */
+    String VIEW_BUFFER_SIZE = "org.glassfish.ozark.viewBufferSize";
+
+    /**
+     * Boolean property that when set to {@code true} indicates Ozark to render
+     * views into memory and write them to the client without blocking the container
+     * thread. Can be overridden per controller using
+     * {@link org.glassfish.ozark.annotation.AsyncWrite}.
+     */
+    String ASYNC_WRITE = "org.glassfish.ozark.asyncWrite";
+
+    /**
+     * Boolean property that when set to {@code true} indicates Ozark to render
+     * views completely before writing them, so that a Content-Length header can be
+     * set and a failure during rendering can still be mapped to an error view.
+     */
+    String BUFFERED_RENDER = "org.glassfish.ozark.bufferedRender";
+
+    /**
+     * Integer property that sets the size in bytes above which a view rendered
+     * in memory is moved to a temporary file. A value of zero disables the use
+     * of temporary files. Defaults to 1048576.
+     */
+    String RENDER_SPILL_THRESHOLD = "org.glassfish.ozark.renderSpillThreshold";
+
+    /**
+     * Boolean property that when set to {@code true} indicates Ozark to compress
+     * views using the "gzip" or "deflate" content coding, as accepted by the client.
+     */
+    String COMPRESSION = "org.glassfish.ozark.compression";
+
+    /**
+     * Integer property that sets the size in bytes below which a view is not
+     * compressed. Defaults to 1024.
+     */
+    String COMPRESSION_MIN_SIZE = "org.glassfish.ozark.compressionMinSize";
+
+    /**
+     * String property with a comma-separated list of media types, possibly with
+     * wildcards, of views that can be compressed. Defaults to text types and
+     * common XML, JSON and JavaScript types.
+     */
+    String COMPRESSION_MEDIA_TYPES = "org.glassfish.ozark.compressionMediaTypes";
+
+    /**
+     * Boolean property that when set to {@code true} indicates Ozark to render
+     * views of successful responses completely and set a strong ETag computed from
+     * the rendered bytes. GET and HEAD requests with a matching If-None-Match header
+     * get a 304 response with no body.
+     */
+    String ETAG = "org.glassfish.ozark.etag";
+
+    /**
+     * Integer property that sets the maximum number of sections stored in
+     * {@link org.glassfish.ozark.cache.FragmentCache}, and of evicted tags it
+     * remembers. Defaults to 1000.
+     */
+    String FRAGMENT_CACHE_SIZE = "org.glassfish.ozark.fragmentCacheSize";
+
+    /**
+     * Integer property that sets the size in bytes of the memory outside the heap
+     * used to store views cached by {@link org.glassfish.ozark.annotation.OutputCache}.
+     * Views are stored on the heap if not set, or if the application provides a
+     * {@link org.glassfish.ozark.cache.PageStore} bean.
+     */
+    String PAGE_STORE_SIZE = "org.glassfish.ozark.pageStoreSize";
+
+    /**
+     * String property with the directory of a memory-mapped file used to store views,
+     * instead of direct memory, if {@link #PAGE_STORE_SIZE} is set.
+     */
+    String PAGE_STORE_DIRECTORY = "org.glassfish.ozark.pageStoreDirectory";
+
+    /**
+     * Integer property that sets the maximum number of views for which the selected
+     * view engine is cached. Defaults to 1000.
+     */
+    String VIEW_ENGINE_CACHE_SIZE = "org.glassfish.ozark.viewEngineCacheSize";
+
+    /**
+     * Boolean property that when set to {@code true} indicates Ozark to deliver MVC
+     * events to observers on a background thread, using immutable copies of the events.
+     * Observers annotated with {@link org.glassfish.ozark.annotation.Synchronous} are
+     * still called on the request thread.
+     */
+    String ASYNC_EVENTS = "org.glassfish.ozark.asyncEvents";
+
+    /**
+     * Integer property that sets the number of threads that deliver events if
+     * {@link #ASYNC_EVENTS} is set. Defaults to 1.
+     */
+    String ASYNC_EVENTS_THREADS = "org.glassfish.ozark.asyncEventsThreads";
+
+    /**
+     * Integer property that sets the maximum number of events waiting to be delivered
+     * if {@link #ASYNC_EVENTS} is set. Defaults to 1000.
+     */
+    String ASYNC_EVENTS_QUEUE_SIZE = "org.glassfish.ozark.asyncEventsQueueSize";
+
+    /**
+     * String property that sets what happens to an event when the queue set by
+     * {@link #ASYNC_EVENTS_QUEUE_SIZE} is full: {@code "drop"} discards the event and
+     * {@code "block"} waits on the request thread until there is room. Defaults to
+     * {@code "drop"}.
+     */
+    String ASYNC_EVENTS_OVERFLOW = "org.glassfish.ozark.asyncEventsOverflow";
 }
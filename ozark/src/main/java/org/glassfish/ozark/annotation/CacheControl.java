@@ -0,0 +1,103 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Sets the Cache-Control header of successful and 304 responses of a controller
+ * method, or of all the controller methods in a class, so that browsers and shared
+ * caches can serve repeated requests. A header set by the controller itself is left
+ * untouched.</p>
+ *
+ * <p>Responses of controllers that produce several media types also get a Vary header
+ * listing the request headers used to select the media type. Views must not include
+ * anything specific to a user unless {@link #isPrivate()} is {@code true}.</p>
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Inherited
+public @interface CacheControl {
+
+    /**
+     * Value of the max-age directive. Omitted if negative.
+     *
+     * @return time in {@link #unit()}.
+     */
+    long maxAge() default -1;
+
+    /**
+     * Value of the s-maxage directive, which applies to shared caches. Omitted if negative.
+     *
+     * @return time in {@link #unit()}.
+     */
+    long sMaxAge() default -1;
+
+    /**
+     * Whether responses can only be stored by the browser, using the private directive,
+     * instead of by any cache, using the public directive.
+     *
+     * @return {@code true} for private responses.
+     */
+    boolean isPrivate() default false;
+
+    /**
+     * Value of the stale-while-revalidate directive. Omitted if negative.
+     *
+     * @return time in {@link #unit()}.
+     */
+    long staleWhileRevalidate() default -1;
+
+    /**
+     * Time unit of the other values. Values are rounded down to seconds.
+     *
+     * @return time unit.
+     */
+    TimeUnit unit() default TimeUnit.SECONDS;
+}
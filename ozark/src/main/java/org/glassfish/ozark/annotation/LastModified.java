@@ -0,0 +1,77 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>Identifies a public, no-argument method of a controller class that returns the
+ * time its GET views were last modified, as a {@code long} in milliseconds since the
+ * epoch, a {@link java.util.Date} or a {@link java.time.Instant}. A {@code null} or
+ * negative value disables the check for a request.</p>
+ *
+ * <p>The method is called before the controller method. If the If-Modified-Since
+ * header of the request shows that the client already has the current version, a
+ * 304 response is returned without calling the controller method or rendering the
+ * view. Otherwise, a Last-Modified header is set on the response.</p>
+ *
+ * <p>The method should be cheap compared to the controller method it guards, e.g.
+ * returning a timestamp kept up-to-date by the application.</p>
+ *
+ * @author Santiago Pericas-Geertsen
+ * @see org.glassfish.ozark.annotation.ResourceVersion
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface LastModified {
+
+    /**
+     * Whether to also take into account the modification time of the template named
+     * by {@link javax.mvc.annotation.View} on the controller method or class.
+     *
+     * @return {@code true} to include the template.
+     */
+    boolean includeView() default false;
+}
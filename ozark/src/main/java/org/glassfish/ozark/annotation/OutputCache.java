@@ -0,0 +1,139 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Caches the rendered views of a controller method, or of all the controller methods
+ * in a class. While an entry is fresh, GET requests that map to the same key are served
+ * from the cache without calling the view engine. Only successful responses are cached.</p>
+ *
+ * <p>The key is made of the request path, the query parameters, and optionally some
+ * request headers and the locale in {@link javax.mvc.MvcContext#getLocale()}. For
+ * methods that produce more than one media type, it also includes the media type
+ * selected from the Accept header of the request. Views
+ * must not include anything specific to a user that is not part of the key, such as
+ * CSRF tokens.</p>
+ *
+ * <p>Fresh entries are served before the controller method is called. Concurrent
+ * requests for a view that is not cached can optionally wait for the first one to
+ * render it, see {@link #coalesceMillis()}, and expired entries can optionally be
+ * served while a single request renders the view again, see
+ * {@link #staleWhileRevalidate()}. Request filters that run after
+ * {@link javax.ws.rs.Priorities#ENTITY_CODER} are not called for views served from
+ * the cache.</p>
+ *
+ * @author Santiago Pericas-Geertsen
+ * @see org.glassfish.ozark.cache.PageCache
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Inherited
+public @interface OutputCache {
+
+    /**
+     * Time to live of a cached view.
+     *
+     * @return time to live in {@link #unit()}.
+     */
+    long ttl();
+
+    /**
+     * Time unit of {@link #ttl()}.
+     *
+     * @return time unit.
+     */
+    TimeUnit unit() default TimeUnit.SECONDS;
+
+    /**
+     * Maximum number of views cached for a controller method.
+     *
+     * @return maximum number of entries.
+     */
+    int maxEntries() default 100;
+
+    /**
+     * Names of the query parameters that are part of the key. The default,
+     * {@code "*"}, includes the whole query string.
+     *
+     * @return query parameter names.
+     */
+    String[] varyByQuery() default "*";
+
+    /**
+     * Names of the request headers that are part of the key. These are added to the
+     * Vary header of the response.
+     *
+     * @return header names.
+     */
+    String[] varyByHeader() default {};
+
+    /**
+     * Whether the request locale is part of the key.
+     *
+     * @return {@code true} to include the locale.
+     */
+    boolean varyByLocale() default false;
+
+    /**
+     * Maximum time in milliseconds that a request for a view that is not cached waits
+     * for a concurrent request rendering the same view. The default, zero, disables
+     * waiting.
+     *
+     * @return maximum wait time in milliseconds.
+     */
+    long coalesceMillis() default 0;
+
+    /**
+     * Time after expiration during which a cached view is still served while a single
+     * request renders it again. The default, zero, disables serving expired views.
+     *
+     * @return time in {@link #unit()}.
+     */
+    long staleWhileRevalidate() default 0;
+}
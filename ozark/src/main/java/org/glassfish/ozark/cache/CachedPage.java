@@ -0,0 +1,208 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.cache;
+
+import javax.ws.rs.core.MediaType;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.io.OutputStream;
+import java.io.Serializable;
+
+/**
+ * <p>A rendered view stored in {@link PageCache}, together with the content type and
+ * headers needed to serve it again, and its expiration time in milliseconds since
+ * the epoch. Pages are serializable values made of bytes and strings, so that a
+ * {@link PageStore} can keep them outside the JVM that rendered them.</p>
+ *
+ * <p>Pages returned by a {@link PageStore} may hold their body outside the heap, in
+ * which case they override {@link #getLength()}, {@link #writeBody(java.io.OutputStream)}
+ * and {@link #release()}. Such pages are serialized as a copy with the body on the
+ * heap. Callers must release pages returned by a store once they no longer need the
+ * body.</p>
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+public class CachedPage implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final byte[] body;
+
+    private final String contentType;
+
+    private final String contentEncoding;
+
+    private final String etag;
+
+    private final String vary;
+
+    private final long expires;
+
+    private transient MediaType mediaType;
+
+    /**
+     * Constructor for cached pages.
+     *
+     * @param body rendered bytes, possibly compressed.
+     * @param mediaType media type of the view.
+     * @param contentEncoding value of Content-Encoding header or {@code null}.
+     * @param etag value of ETag header or {@code null}.
+     * @param vary value of Vary header or {@code null}.
+     * @param expires expiration time in milliseconds since the epoch.
+     */
+    public CachedPage(byte[] body, MediaType mediaType, String contentEncoding, String etag, String vary,
+                      long expires) {
+        this.body = body;
+        this.contentType = mediaType.toString();
+        this.mediaType = mediaType;
+        this.contentEncoding = contentEncoding;
+        this.etag = etag;
+        this.vary = vary;
+        this.expires = expires;
+    }
+
+    /**
+     * Constructor for cached pages whose body is held by a subclass.
+     *
+     * @param mediaType media type of the view.
+     * @param contentEncoding value of Content-Encoding header or {@code null}.
+     * @param etag value of ETag header or {@code null}.
+     * @param vary value of Vary header or {@code null}.
+     * @param expires expiration time in milliseconds since the epoch.
+     */
+    protected CachedPage(MediaType mediaType, String contentEncoding, String etag, String vary, long expires) {
+        this(null, mediaType, contentEncoding, etag, vary, expires);
+    }
+    /**
+     * Returns the rendered bytes. Pages held outside the heap return a copy, so
+     * {@link #writeBody(java.io.OutputStream)} should be preferred.
+     *
+     * @return rendered bytes, possibly compressed.
+     */
+    public byte[] getBody() {
+        if (body != null) {
+            return body;
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(getLength());
+        try {
+            writeBody(out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Returns the number of rendered bytes.
+     *
+     * @return length of body.
+     */
+    public int getLength() {
+        return body.length;
+    }
+
+    /**
+     * Writes the rendered bytes to a stream.
+     *
+     * @param out stream to write to.
+     * @throws IOException if an I/O error occurs.
+     */
+    public void writeBody(OutputStream out) throws IOException {
+        out.write(body);
+    }
+
+    /**
+     * Tells the store that returned this page that its body is no longer needed. Does
+     * nothing unless overridden.
+     */
+    public void release() {
+    }
+
+    public MediaType getMediaType() {
+        if (mediaType == null) {
+            mediaType = MediaType.valueOf(contentType);
+        }
+        return mediaType;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    public String getETag() {
+        return etag;
+    }
+
+    public String getVary() {
+        return vary;
+    }
+
+    public long getExpires() {
+        return expires;
+    }
+
+    /**
+     * Determines if this page has expired. An expired page may still be served
+     * while it is being refreshed, see {@link org.glassfish.ozark.annotation.OutputCache#staleWhileRevalidate()}.
+     *
+     * @param now current time in milliseconds since the epoch.
+     * @return outcome of test.
+     */
+    public boolean isExpired(long now) {
+        return now - expires >= 0;
+    }
+
+    /**
+     * Serializes pages whose body is held by a subclass as a copy with the body on
+     * the heap.
+     *
+     * @return object to serialize.
+     * @throws ObjectStreamException never.
+     */
+    protected Object writeReplace() throws ObjectStreamException {
+        return body != null ? this
+                : new CachedPage(getBody(), getMediaType(), contentEncoding, etag, vary, expires);
+    }
+}
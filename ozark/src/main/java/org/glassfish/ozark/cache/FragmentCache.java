@@ -0,0 +1,334 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.cache;
+
+import org.glassfish.ozark.Properties;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.core.Configuration;
+import javax.ws.rs.core.Context;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.glassfish.ozark.util.PropertyUtils.getProperty;
+
+/**
+ * <p>Cache of rendered sections of views, such as navigation menus or footers, that
+ * are shared by otherwise personalized pages. It is available to templates of any
+ * view engine as {@code mvcFragments}, both as a CDI named bean and in
+ * {@link javax.mvc.Models}. For example, using FreeMarker:</p>
+ *
+ * <pre>
+ * &lt;#if mvcFragments.contains('nav')&gt;
+ *     ${mvcFragments.get('nav')}
+ * &lt;#else&gt;
+ *     &lt;#assign nav&gt;...&lt;/#assign&gt;
+ *     ${mvcFragments.put('nav', nav, 60, 'category:7,menu')}
+ * &lt;/#if&gt;
+ * </pre>
+ *
+ * <p>Templates must be able to call methods with arguments and to capture a rendered
+ * section as a string, as FreeMarker ({@code #assign}), Velocity ({@code #define}) and
+ * JSP ({@code c:set}) can. Logic-less engines such as Mustache and Handlebars, and
+ * Facelets without a custom tag, cannot use this cache; no adapters for them are
+ * provided.</p>
+ *
+ * <p>Sections can be tagged and all sections with a tag evicted with {@link #evictTag(String)},
+ * e.g. by a controller after updating the data they show. Evictions are numbered, and a
+ * section is stamped with the number of the last eviction when a lookup for it first
+ * missed in the request that renders it, so that a section whose tags are evicted while
+ * it is being rendered is not stored. A section is only returned if none of its tags has
+ * been evicted after its stamp, so reads and evictions do not lock.</p>
+ *
+ * <p>The number of sections is bounded by {@link org.glassfish.ozark.Properties#FRAGMENT_CACHE_SIZE}.
+ * When full, sections that are expired or evicted are removed first and then the section
+ * closest to expiring. The number of evicted tags that are remembered has the same bound;
+ * when it is exceeded, the older half of the tags are forgotten and all tagged sections
+ * stamped before them are treated as evicted.</p>
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+@Named("mvcFragments")
+@ApplicationScoped
+public class FragmentCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private static final String[] NO_TAGS = new String[0];
+
+    private static final String MISSES = FragmentCache.class.getName() + ".misses";
+
+    private final ConcurrentMap<String, Fragment> entries = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Long> tagEvictions = new ConcurrentHashMap<>();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    private volatile long forgotten;
+
+    @Inject
+    private HttpServletRequest request;
+
+    @Context
+    private Configuration config;
+
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+
+    @PostConstruct
+    public void init() {
+        if (config != null) {
+            maxEntries = getProperty(config, Properties.FRAGMENT_CACHE_SIZE, DEFAULT_MAX_ENTRIES);
+        }
+    }
+
+    /**
+     * Returns a cached section.
+     *
+     * @param key key of the section.
+     * @return rendered section or {@code null} if not cached, expired or evicted.
+     */
+    public String get(String key) {
+        final Fragment fragment = entries.get(key);
+        if (fragment != null && isValid(fragment, System.nanoTime())) {
+            return fragment.content;
+        }
+        if (fragment != null) {
+            entries.remove(key, fragment);
+        }
+        recordMiss(key);
+        return null;
+    }
+
+    /**
+     * Determines if a section is cached.
+     *
+     * @param key key of the section.
+     * @return outcome of test.
+     */
+    public boolean contains(String key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Stores a section without tags.
+     *
+     * @param key key of the section.
+     * @param content rendered section.
+     * @param ttlSeconds time to live in seconds.
+     * @return rendered section as a string, so that it can be output by the template.
+     */
+    public String put(String key, Object content, long ttlSeconds) {
+        return put(key, content, ttlSeconds, NO_TAGS);
+    }
+
+    /**
+     * Stores a section with tags.
+     *
+     * @param key key of the section.
+     * @param content rendered section.
+     * @param ttlSeconds time to live in seconds.
+     * @param tags comma-separated list of tags.
+     * @return rendered section as a string, so that it can be output by the template.
+     */
+    public String put(String key, Object content, long ttlSeconds, String tags) {
+        return put(key, content, ttlSeconds, tags == null ? NO_TAGS
+                : Arrays.stream(tags.split(",")).map(String::trim).filter(t -> !t.isEmpty()).toArray(String[]::new));
+    }
+
+    /**
+     * Stores a section with tags. The section is not stored if one of its tags has been
+     * evicted since the lookup for it missed in the current request, or since this
+     * method is called if there was no such lookup.
+     *
+     * @param key key of the section.
+     * @param content rendered section.
+     * @param ttlSeconds time to live in seconds.
+     * @param tags tags of the section.
+     * @return rendered section as a string, so that it can be output by the template.
+     */
+    public String put(String key, Object content, long ttlSeconds, String[] tags) {
+        final String s = content != null ? content.toString() : "";
+        final long now = System.nanoTime();
+        final Fragment fragment = new Fragment(s, now + TimeUnit.SECONDS.toNanos(ttlSeconds), tags, takeMiss(key));
+        if (isEvicted(fragment)) {
+            return s;
+        }
+        if (entries.size() >= maxEntries) {
+            evict(now);
+        }
+        entries.put(key, fragment);
+        return s;
+    }
+
+    /**
+     * Evicts a section.
+     *
+     * @param key key of the section.
+     */
+    public void evict(String key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Evicts all sections with a tag.
+     *
+     * @param tag the tag.
+     */
+    public void evictTag(String tag) {
+        tagEvictions.put(tag, evictions.incrementAndGet());
+        if (tagEvictions.size() > maxEntries) {
+            forgetTags();
+        }
+    }
+
+    /**
+     * Evicts all sections.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    private boolean isValid(Fragment fragment, long now) {
+        return now - fragment.expires < 0 && !isEvicted(fragment);
+    }
+
+    private boolean isEvicted(Fragment fragment) {
+        for (String tag : fragment.tags) {
+            if (tagEvictions.getOrDefault(tag, 0L) > fragment.stamp) {
+                return true;
+            }
+        }
+        // Read after the tags, as tags are forgotten after this is updated
+        return fragment.tags.length > 0 && forgotten > fragment.stamp;
+    }
+
+    /**
+     * Forgets the older half of the evicted tags.
+     */
+    private synchronized void forgetTags() {
+        if (tagEvictions.size() <= maxEntries) {
+            return;
+        }
+        final long[] numbers = tagEvictions.values().stream().mapToLong(Long::longValue).sorted().toArray();
+        final long last = numbers[numbers.length / 2];
+        forgotten = Math.max(forgotten, last);
+        tagEvictions.values().removeIf(n -> n <= last);
+    }
+
+    /**
+     * Records the number of the last eviction when the lookup for a section first
+     * misses in the current request.
+     *
+     * @param key key of the section.
+     */
+    @SuppressWarnings("unchecked")
+    private void recordMiss(String key) {
+        if (request != null) {
+            Map<String, Long> misses = (Map<String, Long>) request.getAttribute(MISSES);
+            if (misses == null) {
+                misses = new HashMap<>();
+                request.setAttribute(MISSES, misses);
+            }
+            misses.putIfAbsent(key, evictions.get());
+        }
+    }
+
+    /**
+     * Returns the number of the last eviction when the lookup for a section missed
+     * in the current request, or the number of the last eviction if there was no
+     * such lookup.
+     *
+     * @param key key of the section.
+     * @return stamp of the section.
+     */
+    @SuppressWarnings("unchecked")
+    private long takeMiss(String key) {
+        final Map<String, Long> misses = request != null ? (Map<String, Long>) request.getAttribute(MISSES) : null;
+        final Long stamp = misses != null ? misses.remove(key) : null;
+        return stamp != null ? stamp : evictions.get();
+    }
+
+    private void evict(long now) {
+        Map.Entry<String, Fragment> oldest = null;
+        final Iterator<Map.Entry<String, Fragment>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<String, Fragment> e = it.next();
+            if (!isValid(e.getValue(), now)) {
+                it.remove();
+            } else if (oldest == null || e.getValue().expires - oldest.getValue().expires < 0) {
+                oldest = e;
+            }
+        }
+        if (oldest != null && entries.size() >= maxEntries) {
+            entries.remove(oldest.getKey(), oldest.getValue());
+        }
+    }
+
+    /**
+     * A cached section and the number of the last eviction before it was rendered.
+     */
+    private static class Fragment {
+
+        private final String content;
+
+        private final long expires;
+
+        private final String[] tags;
+
+        private final long stamp;
+
+        Fragment(String content, long expires, String[] tags, long stamp) {
+            this.content = content;
+            this.expires = expires;
+            this.tags = tags;
+            this.stamp = stamp;
+        }
+    }
+}
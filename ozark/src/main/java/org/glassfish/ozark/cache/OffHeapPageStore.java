@@ -0,0 +1,402 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.cache;
+
+import org.glassfish.ozark.core.BufferPool;
+
+import javax.ws.rs.core.MediaType;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * <p>A {@link PageStore} that keeps the bodies of views outside the heap, either in
+ * direct memory or in a memory-mapped file, so that large caches do not add to the
+ * garbage collector's work. Only the keys and headers of views are kept on the heap.</p>
+ *
+ * <p>Memory is divided into blocks of {@link #BLOCK_SIZE} bytes and a view uses as
+ * many blocks as needed, in any order. When there are not enough free blocks, views
+ * are evicted using the CLOCK algorithm: views are queued in the order they were
+ * stored and a view that has been read since it was last passed over gets a second
+ * chance.</p>
+ *
+ * <p>Reads do not lock. A view returned by {@link #get(String)} is pinned until it is
+ * released, so that its blocks are not reused while it is being written to a response,
+ * even if it is evicted in the meantime. Bodies are written to responses a block at a
+ * time using a pooled buffer, never copied to the heap as a whole.</p>
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+public class OffHeapPageStore implements PageStore {
+
+    public static final int BLOCK_SIZE = 4096;
+
+    private final ByteBuffer memory;
+
+    private final ConcurrentMap<String, Entry> index = new ConcurrentHashMap<>();
+
+    private final Object lock = new Object();
+
+    // Guarded by lock
+    private final int[] free;
+
+    // Guarded by lock
+    private int freeCount;
+
+    // Guarded by lock
+    private final Deque<Entry> clock = new ArrayDeque<>();
+
+    /**
+     * Constructor for stores in direct memory.
+     *
+     * @param size size in bytes.
+     */
+    public OffHeapPageStore(int size) {
+        this(ByteBuffer.allocateDirect(size));
+    }
+
+    /**
+     * Constructor for stores in a memory-mapped file. The file is created in the given
+     * directory and deleted once mapped, where supported, or on exit otherwise.
+     *
+     * @param size size in bytes.
+     * @param directory directory for the file.
+     * @throws IOException if the file cannot be created or mapped.
+     */
+    public OffHeapPageStore(int size, Path directory) throws IOException {
+        this(map(size, directory));
+    }
+
+    private OffHeapPageStore(ByteBuffer memory) {
+        this.memory = memory;
+        free = new int[memory.capacity() / BLOCK_SIZE];
+        for (int i = 0; i < free.length; i++) {
+            free[i] = free.length - 1 - i;
+        }
+        freeCount = free.length;
+    }
+
+    @Override
+    public CachedPage get(String key) {
+        final Entry entry = index.get(key);
+        if (entry == null || !entry.pin()) {
+            return null;
+        }
+        entry.referenced = true;
+        return new Page(entry);
+    }
+
+    @Override
+    public void put(String key, CachedPage page, long ttl) {
+        final int length = page.getLength();
+        final int[] blocks = allocate((length + BLOCK_SIZE - 1) / BLOCK_SIZE);
+        if (blocks == null) {
+            return;         // too large or all views pinned
+        }
+        final Entry entry = new Entry(key, blocks, length, page);
+        try {
+            page.writeBody(new BlockOutputStream(blocks));
+        } catch (IOException e) {
+            unpin(entry);
+            return;
+        }
+        synchronized (lock) {
+            // Drop removed views from the queue before it outgrows the index
+            if (clock.size() > 2 * index.size() + 16) {
+                clock.removeIf(e -> e.removed);
+            }
+            clock.add(entry);
+            final Entry old = index.put(key, entry);
+            if (old != null) {
+                retire(old);
+            }
+        }
+    }
+
+    @Override
+    public void remove(String key) {
+        synchronized (lock) {
+            final Entry entry = index.get(key);
+            if (entry != null) {
+                retire(entry);
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        synchronized (lock) {
+            index.values().forEach(this::retire);
+            clock.clear();
+        }
+    }
+
+    private int[] allocate(int n) {
+        synchronized (lock) {
+            if (n > free.length) {
+                return null;
+            }
+            while (freeCount < n && evictOne()) {
+                // keep evicting
+            }
+            if (freeCount < n) {
+                return null;
+            }
+            final int[] blocks = new int[n];
+            for (int i = 0; i < n; i++) {
+                blocks[i] = free[--freeCount];
+            }
+            return blocks;
+        }
+    }
+
+    /**
+     * Advances the clock hand to the next view not read since it was last passed over
+     * and evicts it. Must be called holding the lock.
+     *
+     * @return {@code false} if there are no views left.
+     */
+    private boolean evictOne() {
+        Entry entry;
+        while ((entry = clock.poll()) != null) {
+            if (entry.removed) {
+                continue;
+            }
+            if (entry.referenced) {
+                entry.referenced = false;
+                clock.add(entry);
+                continue;
+            }
+            retire(entry);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes a view from the index and drops the reference held by the store. Must
+     * be called holding the lock.
+     *
+     * @param entry view to remove.
+     */
+    private void retire(Entry entry) {
+        if (!entry.removed) {
+            entry.removed = true;
+            index.remove(entry.key, entry);
+            unpin(entry);
+        }
+    }
+
+    private void unpin(Entry entry) {
+        if (entry.refs.decrementAndGet() == 0) {
+            synchronized (lock) {
+                for (int block : entry.blocks) {
+                    free[freeCount++] = block;
+                }
+            }
+        }
+    }
+
+    private static ByteBuffer map(int size, Path directory) throws IOException {
+        final Path file = Files.createTempFile(directory, "ozark-", ".pages");
+        try (FileChannel channel = FileChannel.open(file, READ, WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } finally {
+            try {
+                Files.delete(file);
+            } catch (IOException e) {
+                file.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * A stored view. Holds one reference for the store and one for each page
+     * returned by {@link #get(String)} and not yet released; its blocks are freed
+     * once there are no references left.
+     */
+    private static class Entry {
+
+        private final String key;
+
+        private final int[] blocks;
+
+        private final int length;
+
+        private final MediaType mediaType;
+
+        private final String contentEncoding;
+
+        private final String etag;
+
+        private final String vary;
+
+        private final long expires;
+
+        private final AtomicInteger refs = new AtomicInteger(1);
+
+        private volatile boolean referenced;
+
+        // Guarded by lock
+        private boolean removed;
+
+        Entry(String key, int[] blocks, int length, CachedPage page) {
+            this.key = key;
+            this.blocks = blocks;
+            this.length = length;
+            mediaType = page.getMediaType();
+            contentEncoding = page.getContentEncoding();
+            etag = page.getETag();
+            vary = page.getVary();
+            expires = page.getExpires();
+        }
+
+        boolean pin() {
+            int n;
+            do {
+                n = refs.get();
+                if (n == 0) {
+                    return false;
+                }
+            } while (!refs.compareAndSet(n, n + 1));
+            return true;
+        }
+    }
+
+    /**
+     * A view returned by {@link #get(String)}, pinned until released.
+     */
+    private class Page extends CachedPage {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Entry entry;
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Page(Entry entry) {
+            super(entry.mediaType, entry.contentEncoding, entry.etag, entry.vary, entry.expires);
+            this.entry = entry;
+        }
+
+        @Override
+        public int getLength() {
+            return entry.length;
+        }
+
+        @Override
+        public void writeBody(OutputStream out) throws IOException {
+            final ByteBuffer src = memory.duplicate();
+            final byte[] chunk = BufferPool.acquire();
+            try {
+                int remaining = entry.length;
+                for (int block : entry.blocks) {
+                    final int n = Math.min(remaining, BLOCK_SIZE);
+                    src.position(block * BLOCK_SIZE);
+                    src.get(chunk, 0, n);
+                    out.write(chunk, 0, n);
+                    remaining -= n;
+                }
+            } finally {
+                BufferPool.release(chunk);
+            }
+        }
+
+        @Override
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                unpin(entry);
+            }
+        }
+    }
+
+    /**
+     * Writes the body of a view to its blocks.
+     */
+    private class BlockOutputStream extends OutputStream {
+
+        private final ByteBuffer dst = memory.duplicate();
+
+        private final int[] blocks;
+
+        private int next;
+
+        private int available;
+
+        BlockOutputStream(int[] blocks) {
+            this.blocks = blocks;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (available == 0) {
+                    if (next == blocks.length) {
+                        throw new IOException("View larger than its length");
+                    }
+                    dst.position(blocks[next++] * BLOCK_SIZE);
+                    available = BLOCK_SIZE;
+                }
+                final int n = Math.min(len, available);
+                dst.put(b, off, n);
+                off += n;
+                len -= n;
+                available -= n;
+            }
+        }
+    }
+}
@@ -0,0 +1,376 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.cache;
+
+import org.glassfish.ozark.Properties;
+import org.glassfish.ozark.annotation.OutputCache;
+import org.glassfish.ozark.jersey.VariantSelector;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.Instance;
+import javax.inject.Inject;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.core.Configuration;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Variant;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.glassfish.ozark.util.PropertyUtils.getProperty;
+
+/**
+ * <p>Cache of rendered views for controllers annotated by
+ * {@link org.glassfish.ozark.annotation.OutputCache}. Each controller method has
+ * its own region with the time to live and maximum number of entries given by its
+ * annotation.</p>
+ *
+ * <p>Views are kept in a {@link PageStore}: a CDI bean provided by the application,
+ * an {@link OffHeapPageStore} if {@link org.glassfish.ozark.Properties#PAGE_STORE_SIZE}
+ * is set, or a {@link HeapPageStore} otherwise. Views carry their expiration time as
+ * wall-clock time, so that they can be shared by several nodes, while each region
+ * keeps the expiration times of the views it has stored on this node. Reads do not lock. When a region is full, entries that can
+ * no longer be served are removed first and then the entry closest to expiring, which
+ * requires a scan of the region.</p>
+ *
+ * <p>A request that renders a view can claim it by calling {@link #lead}, so that
+ * concurrent requests for the same view wait for it or keep serving an expired entry,
+ * rather than rendering the view again. The claim ends when {@link #complete} is called,
+ * or once it is older than both the wait time and the stale-while-revalidate period of
+ * the region, in case the request that holds it failed without ending it.</p>
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+@ApplicationScoped
+public class PageCache {
+
+    /**
+     * Request attribute holding the {@link PageKey} of a cacheable view.
+     */
+    public static final String PAGE_KEY = PageCache.class.getName() + ".pageKey";
+
+    /**
+     * Request attribute holding the {@link Flight} of a request rendering a view.
+     */
+    public static final String FLIGHT = PageCache.class.getName() + ".flight";
+
+    private final ConcurrentMap<Method, Region> regions = new ConcurrentHashMap<>();
+
+    @Inject
+    private Instance<PageStore> stores;
+
+    @Context
+    private Configuration config;
+
+    private PageStore store = new HeapPageStore();
+
+    @PostConstruct
+    public void init() {
+        if (stores != null && !stores.isUnsatisfied()) {
+            store = stores.get();
+        } else if (config != null) {
+            final int size = getProperty(config, Properties.PAGE_STORE_SIZE, 0);
+            if (size > 0) {
+                final String directory = getProperty(config, Properties.PAGE_STORE_DIRECTORY, null);
+                try {
+                    store = directory != null ? new OffHeapPageStore(size, Paths.get(directory))
+                            : new OffHeapPageStore(size);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Unable to map page store in " + directory, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the key of a view returned by a controller method. If the method produces
+     * more than one media type, the key includes the one selected for the request, as
+     * views are negotiated before the controller is called.
+     *
+     * @param method controller method.
+     * @param an cache annotation on method or class.
+     * @param variants variants produced by the method or {@code null} if not declared.
+     * @param request current request.
+     * @param locale request locale.
+     * @return key of the view.
+     */
+    public PageKey createKey(Method method, OutputCache an, List<Variant> variants, HttpServletRequest request,
+                             Locale locale) {
+        final Region region = regions.computeIfAbsent(method, m -> new Region(m, an));
+        final StringBuilder sb = new StringBuilder(request.getRequestURI());
+        final String[] params = an.varyByQuery();
+        if (params.length == 1 && params[0].equals("*")) {
+            final String query = request.getQueryString();
+            if (query != null) {
+                sb.append('?').append(query);
+            }
+        } else {
+            for (String param : params) {
+                sb.append('\n').append(param).append('=').append(Arrays.toString(request.getParameterValues(param)));
+            }
+        }
+        for (String header : an.varyByHeader()) {
+            sb.append('\n').append(header).append(':').append(Collections.list(request.getHeaders(header)));
+        }
+        if (an.varyByLocale()) {
+            sb.append('\n').append(locale);
+        }
+        if (variants != null && variants.size() > 1) {
+            sb.append('\n').append(VariantSelector.select(request, variants).getMediaType());
+        }
+        return new PageKey(region, sb.toString());
+    }
+
+    /**
+     * Returns a cached view, which may have expired but still be within its
+     * stale-while-revalidate period. The caller must call {@link CachedPage#release()}
+     * once it no longer needs its body.
+     *
+     * @param key key of the view.
+     * @param encoding content coding of the response or {@code null}.
+     * @return cached view or {@code null}.
+     */
+    public CachedPage get(PageKey key, String encoding) {
+        final String k = entryKey(key, encoding);
+        final Region region = key.getRegion();
+        final CachedPage page = store.get(k);
+        if (page == null) {
+            region.entries.remove(k);
+        } else if (System.currentTimeMillis() - page.getExpires() - region.staleMillis >= 0) {
+            page.release();
+            region.entries.remove(k);
+            store.remove(k);
+            return null;
+        }
+        return page;
+    }
+
+    /**
+     * Stores a view in the cache, evicting other views if the region is full. The
+     * Content-Encoding, ETag and Vary headers are stored with it.
+     *
+     * @param key key of the view.
+     * @param encoding content coding selected for the response or {@code null}.
+     * @param body rendered bytes.
+     * @param mediaType media type of the view.
+     * @param headers response headers.
+     */
+    public void put(PageKey key, String encoding, byte[] body, MediaType mediaType,
+                    MultivaluedMap<String, Object> headers) {
+        final Region region = key.getRegion();
+        final long now = System.nanoTime();
+        if (region.entries.size() >= region.maxEntries) {
+            region.evict(store, now);
+        }
+        final String k = entryKey(key, encoding);
+        store.put(k, new CachedPage(body, mediaType,
+                headerString(headers, HttpHeaders.CONTENT_ENCODING), headerString(headers, HttpHeaders.ETAG),
+                headerString(headers, HttpHeaders.VARY), System.currentTimeMillis() + region.ttlMillis),
+                region.ttlMillis + region.staleMillis);
+        region.entries.put(k, now + region.ttl);
+    }
+
+    /**
+     * Claims the rendering of a view.
+     *
+     * @param key key of the view.
+     * @return flight to pass to {@link #complete}, or {@code null} if another request
+     * is already rendering the view.
+     */
+    public Flight lead(PageKey key) {
+        final Region region = key.getRegion();
+        final long now = System.nanoTime();
+        final Flight flight = new Flight(region, key.getKey(), now);
+        final Flight current = region.flights.putIfAbsent(key.getKey(), flight);
+        if (current == null) {
+            return flight;
+        }
+        // Take over claims that have not been completed in time
+        if (now - current.started > region.claimTimeout && region.flights.replace(key.getKey(), current, flight)) {
+            current.latch.countDown();
+            return flight;
+        }
+        return null;
+    }
+
+    /**
+     * Waits for the request rendering a view, if any, to complete, but no longer than
+     * {@link org.glassfish.ozark.annotation.OutputCache#coalesceMillis()}.
+     *
+     * @param key key of the view.
+     * @return {@code true} if no request is rendering the view when this method returns.
+     * @throws InterruptedException if the current thread is interrupted.
+     */
+    public boolean await(PageKey key) throws InterruptedException {
+        final Flight flight = key.getRegion().flights.get(key.getKey());
+        return flight == null || flight.latch.await(key.getRegion().maxWait, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Ends a claim returned by {@link #lead} and wakes up waiting requests.
+     *
+     * @param flight claim to end.
+     */
+    public void complete(Flight flight) {
+        flight.region.flights.remove(flight.key, flight);
+        flight.latch.countDown();
+    }
+
+    /**
+     * Removes all views from the cache.
+     */
+    public void clear() {
+        regions.values().forEach(r -> r.entries.clear());
+        store.clear();
+    }
+
+    private static String entryKey(PageKey key, String encoding) {
+        final String k = key.getRegion().name + '\n' + key.getKey();
+        return encoding != null ? k + '\n' + encoding : k;
+    }
+
+    private static String headerString(MultivaluedMap<String, Object> headers, String name) {
+        final List<Object> values = headers.get(name);
+        return values == null || values.isEmpty() ? null
+                : values.stream().map(Object::toString).collect(Collectors.joining(","));
+    }
+
+    /**
+     * Views of a single controller method.
+     */
+    static class Region {
+
+        private final String name;
+
+        private final long ttl;
+
+        private final long stale;
+
+        private final long ttlMillis;
+
+        private final long staleMillis;
+
+        private final long maxWait;
+
+        private final long claimTimeout;
+
+        private final int maxEntries;
+
+        private final String[] varyByHeader;
+
+        private final ConcurrentMap<String, Long> entries = new ConcurrentHashMap<>();
+
+        private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<>();
+
+        Region(Method method, OutputCache an) {
+            name = method.getDeclaringClass().getName() + '#' + method.getName()
+                    + Arrays.stream(method.getParameterTypes()).map(Class::getName)
+                            .collect(Collectors.joining(",", "(", ")"));
+            ttl = an.unit().toNanos(an.ttl());
+            stale = an.unit().toNanos(an.staleWhileRevalidate());
+            ttlMillis = an.unit().toMillis(an.ttl());
+            staleMillis = an.unit().toMillis(an.staleWhileRevalidate());
+            maxWait = TimeUnit.MILLISECONDS.toNanos(an.coalesceMillis());
+            claimTimeout = Math.max(maxWait, stale);
+            maxEntries = an.maxEntries();
+            varyByHeader = an.varyByHeader();
+        }
+
+        String[] getVaryByHeader() {
+            return varyByHeader;
+        }
+
+        boolean isDead(long expires, long now) {
+            return now - expires - stale >= 0;
+        }
+
+        void evict(PageStore store, long now) {
+            Map.Entry<String, Long> oldest = null;
+            final Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+            while (it.hasNext()) {
+                final Map.Entry<String, Long> e = it.next();
+                if (isDead(e.getValue(), now)) {
+                    it.remove();
+                    store.remove(e.getKey());
+                } else if (oldest == null || e.getValue() - oldest.getValue() < 0) {
+                    oldest = e;
+                }
+            }
+            if (oldest != null && entries.size() >= maxEntries && entries.remove(oldest.getKey(), oldest.getValue())) {
+                store.remove(oldest.getKey());
+            }
+        }
+    }
+
+    /**
+     * Claim of a request to render a view.
+     */
+    public static class Flight {
+
+        private final Region region;
+
+        private final String key;
+
+        private final long started;
+
+        private final CountDownLatch latch = new CountDownLatch(1);
+
+        Flight(Region region, String key, long started) {
+            this.region = region;
+            this.key = key;
+            this.started = started;
+        }
+    }
+}
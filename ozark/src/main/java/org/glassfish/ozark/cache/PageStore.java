@@ -0,0 +1,90 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.cache;
+
+/**
+ * <p>Storage of rendered views used by {@link PageCache}. Ozark stores views on the
+ * heap by default, or outside the heap using {@link OffHeapPageStore} if
+ * {@link org.glassfish.ozark.Properties#PAGE_STORE_SIZE} is set. Applications can
+ * provide their own implementation, for example backed by a shared cache, as a CDI
+ * bean.</p>
+ *
+ * <p>{@link PageCache} handles expiration and limits the number of views of each
+ * controller method, but a store may also drop views at any time, for example to
+ * stay within a memory budget. Pages are {@link java.io.Serializable} and carry their
+ * expiration time as wall-clock time, see {@link CachedPage#getExpires()}, so a
+ * store shared by several nodes can keep them as they are.</p>
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+public interface PageStore {
+
+    /**
+     * Returns a stored view. The caller must call {@link CachedPage#release()} once it
+     * no longer needs its body.
+     *
+     * @param key key of the view.
+     * @return stored view or {@code null}.
+     */
+    CachedPage get(String key);
+
+    /**
+     * Stores a view, replacing any view with the same key. The view is never served
+     * after its time to live, which includes any stale-while-revalidate period, so
+     * a store may drop it then.
+     *
+     * @param key key of the view.
+     * @param page view to store.
+     * @param ttl time to live in milliseconds.
+     */
+    void put(String key, CachedPage page, long ttl);
+
+    /**
+     * Removes a view.
+     *
+     * @param key key of the view.
+     */
+    void remove(String key);
+
+    /**
+     * Removes all views.
+     */
+    void clear();
+}
@@ -0,0 +1,329 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.cdi;
+
+import org.glassfish.ozark.util.CdiUtils;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import javax.enterprise.inject.spi.Bean;
+import javax.enterprise.inject.spi.BeanManager;
+import javax.servlet.http.HttpServletRequest;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * <p>A {@link RedirectScopeStore} that carries redirect scopes in the redirect cookie,
+ * so that no state is kept on the server and the request that follows a redirect can
+ * be served by any node. Scopes only live in request attributes; on a redirect,
+ * {@link RedirectScopeManager} calls {@link #encode} to put the instances of the
+ * scope in the cookie, and the next request calls {@link #decode} to rebuild them.</p>
+ *
+ * <p>Instances must be serializable. They are serialized, compressed and signed with
+ * HMAC-SHA256, and optionally encrypted with AES-GCM, using keys derived from a secret
+ * shared by all nodes. The issue time is signed too, so that a cookie is rejected once
+ * older than the time to live of redirect scopes. Cookies are limited to about 4KB;
+ * scopes that do not fit are dropped with a warning.</p>
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+public class CookieRedirectScopeStore implements RedirectScopeStore {
+
+    private static final Logger LOG = Logger.getLogger(CookieRedirectScopeStore.class.getName());
+
+    private static final String SCOPE = CookieRedirectScopeStore.class.getName() + ".scope";
+
+    private static final String SCOPE_ID = CookieRedirectScopeStore.class.getName() + ".scopeId";
+
+    private static final byte SIGNED = 1;
+
+    private static final byte ENCRYPTED = 2;
+
+    private static final int MAC_LENGTH = 32;
+
+    private static final int IV_LENGTH = 12;
+
+    private static final int TAG_LENGTH = 16;
+
+    static final int MAX_COOKIE_LENGTH = 4000;
+
+    private final SecretKeySpec macKey;
+
+    private final SecretKeySpec encryptionKey;
+
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * Constructor for cookie stores.
+     *
+     * @param secret secret shared by all nodes, or {@code null} to use a random one.
+     * @param encrypt whether to encrypt scopes in addition to signing them.
+     */
+    public CookieRedirectScopeStore(String secret, boolean encrypt) {
+        final byte[] master;
+        if (secret != null) {
+            master = secret.getBytes(StandardCharsets.UTF_8);
+        } else {
+            LOG.warning("No secret set for redirect scope cookies, these will only be accepted by this node");
+            master = new byte[32];
+            random.nextBytes(master);
+        }
+        macKey = new SecretKeySpec(derive(master, "mac"), "HmacSHA256");
+        encryptionKey = encrypt ? new SecretKeySpec(Arrays.copyOf(derive(master, "enc"), 16), "AES") : null;
+    }
+
+    @Override
+    public RedirectScope get(HttpServletRequest request, String scopeId) {
+        return scopeId.equals(request.getAttribute(SCOPE_ID)) ? (RedirectScope) request.getAttribute(SCOPE) : null;
+    }
+
+    @Override
+    public void put(HttpServletRequest request, String scopeId, RedirectScope scope) {
+        request.setAttribute(SCOPE_ID, scopeId);
+        request.setAttribute(SCOPE, scope);
+    }
+
+    @Override
+    public RedirectScope remove(HttpServletRequest request, String scopeId) {
+        final RedirectScope scope = get(request, scopeId);
+        if (scope != null) {
+            request.removeAttribute(SCOPE_ID);
+            request.removeAttribute(SCOPE);
+        }
+        return scope;
+    }
+
+    /**
+     * Encodes the instances of a scope as a cookie value.
+     *
+     * @param scope the scope.
+     * @return cookie value, or {@code null} if the instances cannot be serialized or
+     * do not fit in a cookie.
+     */
+    public String encode(RedirectScope scope) {
+        final String value = encode(scope.getInstances(), System.currentTimeMillis());
+        if (value != null && value.length() > MAX_COOKIE_LENGTH) {
+            LOG.warning("Redirect scope of " + value.length() + " characters is too large for a cookie");
+            return null;
+        }
+        return value;
+    }
+
+    /**
+     * Rebuilds a scope from a cookie value. Each instance gets a new creational
+     * context from its bean.
+     *
+     * @param value cookie value.
+     * @param ttl time to live of redirect scopes in milliseconds.
+     * @return the scope, or {@code null} if the value is invalid or too old.
+     */
+    @SuppressWarnings("unchecked")
+    public RedirectScope decode(String value, long ttl) {
+        final Map<String, Object> instances = decode(value, System.currentTimeMillis(), ttl);
+        if (instances == null) {
+            return null;
+        }
+        final BeanManager beanManager = CdiUtils.getApplicationBeanManager();
+        final RedirectScope scope = new RedirectScope();
+        instances.forEach((id, instance) -> {
+            final Bean<Object> bean = (Bean<Object>) beanManager.getPassivationCapableBean(id);
+            if (bean != null) {
+                scope.put(id, bean, instance, beanManager.createCreationalContext(bean));
+            }
+        });
+        return scope;
+    }
+
+    /**
+     * Serializes, compresses, signs and optionally encrypts instances.
+     *
+     * @param instances instances keyed by passivation ID of their bean.
+     * @param issued issue time in milliseconds.
+     * @return URL-safe encoded value, or {@code null} if not serializable.
+     */
+    String encode(Map<String, Object> instances, long issued) {
+        try {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            bytes.write(ByteBuffer.allocate(8).putLong(issued).array());
+            final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            try (ObjectOutputStream out = new ObjectOutputStream(new DeflaterOutputStream(bytes, deflater))) {
+                out.writeObject(new HashMap<>(instances));
+            } finally {
+                deflater.end();
+            }
+
+            final ByteArrayOutputStream message = new ByteArrayOutputStream();
+            if (encryptionKey != null) {
+                final byte[] iv = new byte[IV_LENGTH];
+                random.nextBytes(iv);
+                final Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+                cipher.init(Cipher.ENCRYPT_MODE, encryptionKey, new GCMParameterSpec(TAG_LENGTH * 8, iv));
+                message.write(ENCRYPTED);
+                message.write(iv);
+                message.write(cipher.doFinal(bytes.toByteArray()));
+            } else {
+                message.write(SIGNED);
+                bytes.writeTo(message);
+            }
+            message.write(mac(message.toByteArray(), message.size()));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(message.toByteArray());
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Unable to serialize redirect scope", e);
+            return null;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Verifies, decrypts and deserializes instances. Nothing is deserialized unless
+     * the signature is valid.
+     *
+     * @param value encoded value.
+     * @param now current time in milliseconds.
+     * @param ttl maximum age in milliseconds.
+     * @return instances keyed by passivation ID of their bean, or {@code null}.
+     */
+    @SuppressWarnings("unchecked")
+    Map<String, Object> decode(String value, long now, long ttl) {
+        try {
+            final byte[] message = Base64.getUrlDecoder().decode(value);
+            final int length = message.length - MAC_LENGTH;
+            if (length < 1 || message[0] != (encryptionKey != null ? ENCRYPTED : SIGNED)
+                    || !MessageDigest.isEqual(mac(message, length),
+                    Arrays.copyOfRange(message, length, message.length))) {
+                return null;
+            }
+
+            final byte[] bytes;
+            if (encryptionKey != null) {
+                if (length < 1 + IV_LENGTH + TAG_LENGTH) {
+                    return null;
+                }
+                final Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+                cipher.init(Cipher.DECRYPT_MODE, encryptionKey,
+                        new GCMParameterSpec(TAG_LENGTH * 8, message, 1, IV_LENGTH));
+                bytes = cipher.doFinal(message, 1 + IV_LENGTH, length - 1 - IV_LENGTH);
+            } else {
+                bytes = Arrays.copyOfRange(message, 1, length);
+            }
+
+            final long issued = ByteBuffer.wrap(bytes, 0, 8).getLong();
+            if (now - issued > ttl || issued - now > ttl) {
+                return null;
+            }
+            final Inflater inflater = new Inflater();
+            try (ObjectInputStream in = new ApplicationObjectInputStream(
+                    new InflaterInputStream(new ByteArrayInputStream(bytes, 8, bytes.length - 8), inflater))) {
+                return (Map<String, Object>) in.readObject();
+            } finally {
+                inflater.end();
+            }
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | GeneralSecurityException e) {
+            return null;
+        } catch (IOException | ClassNotFoundException e) {
+            LOG.log(Level.WARNING, "Unable to deserialize redirect scope", e);
+            return null;
+        }
+    }
+
+    private byte[] mac(byte[] message, int length) throws GeneralSecurityException {
+        final Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(macKey);
+        mac.update(message, 0, length);
+        return mac.doFinal();
+    }
+
+    private static byte[] derive(byte[] master, String purpose) {
+        try {
+            final Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(master, "HmacSHA256"));
+            return mac.doFinal(purpose.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Resolves classes using the context class loader, which can load the classes
+     * of the application even if Ozark is installed in the container.
+     */
+    private static final class ApplicationObjectInputStream extends ObjectInputStream {
+
+        ApplicationObjectInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+            if (loader != null) {
+                try {
+                    return Class.forName(desc.getName(), false, loader);
+                } catch (ClassNotFoundException e) {
+                    // fall through
+                }
+            }
+            return super.resolveClass(desc);
+        }
+    }
+}
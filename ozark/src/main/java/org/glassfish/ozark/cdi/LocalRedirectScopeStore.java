@@ -0,0 +1,188 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.cdi;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>A {@link RedirectScopeStore} that keeps scopes in memory on the local node,
+ * so that redirects do not create HTTP sessions. Requests that follow a redirect
+ * must be routed to the same node, or the application must provide a shared store.</p>
+ *
+ * <p>Scopes expire after a fixed time to live. Expired scopes are not returned,
+ * and are removed and destroyed by a scan of the store that runs at most once per
+ * time to live, piggy-backed on calls to {@link #put}.</p>
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+public class LocalRedirectScopeStore implements RedirectScopeStore {
+
+    private final ConcurrentMap<String, Entry> scopes = new ConcurrentHashMap<>();
+
+    private final long ttl;
+
+    private final AtomicLong nextSweep;
+
+    private final LongAdder reaped = new LongAdder();
+
+    /**
+     * Constructor for local stores.
+     *
+     * @param ttl time to live of a scope.
+     * @param unit time unit of {@code ttl}.
+     */
+    public LocalRedirectScopeStore(long ttl, TimeUnit unit) {
+        this.ttl = unit.toNanos(ttl);
+        this.nextSweep = new AtomicLong(System.nanoTime() + this.ttl);
+    }
+
+    @Override
+    public RedirectScope get(HttpServletRequest request, String scopeId) {
+        final Entry entry = scopes.get(scopeId);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired(System.nanoTime())) {
+            expire(scopeId, entry);
+            return null;
+        }
+        return entry.scope;
+    }
+
+    @Override
+    public void put(HttpServletRequest request, String scopeId, RedirectScope scope) {
+        final long now = System.nanoTime();
+        final Entry entry = scopes.get(scopeId);
+        if (entry == null || entry.scope != scope) {
+            scopes.put(scopeId, new Entry(scope, now + ttl));
+        }
+        maybeSweep(now);
+    }
+
+    @Override
+    public boolean putIfAbsent(HttpServletRequest request, String scopeId, RedirectScope scope) {
+        final long now = System.nanoTime();
+        final Entry entry = new Entry(scope, now + ttl);
+        final Entry existing = scopes.putIfAbsent(scopeId, entry);
+        if (existing != null) {
+            if (!existing.isExpired(now) || !scopes.replace(scopeId, existing, entry)) {
+                return false;
+            }
+            reaped.increment();
+            existing.scope.destroy();
+        }
+        maybeSweep(now);
+        return true;
+    }
+
+    @Override
+    public RedirectScope remove(HttpServletRequest request, String scopeId) {
+        final Entry entry = scopes.remove(scopeId);
+        return entry != null ? entry.scope : null;
+    }
+
+    /**
+     * Returns the number of scopes in this store, including expired scopes not yet
+     * removed.
+     *
+     * @return number of scopes.
+     */
+    public int size() {
+        return scopes.size();
+    }
+
+    @Override
+    public long getLiveScopes() {
+        return scopes.size();
+    }
+
+    @Override
+    public long getReapedScopes() {
+        return reaped.sum();
+    }
+
+    /**
+     * Removes and destroys all expired scopes.
+     *
+     * @param now current value of {@link System#nanoTime()}.
+     */
+    void sweep(long now) {
+        scopes.forEach((scopeId, entry) -> {
+            if (entry.isExpired(now)) {
+                expire(scopeId, entry);
+            }
+        });
+    }
+
+    private void maybeSweep(long now) {
+        final long sweep = nextSweep.get();
+        if (now - sweep >= 0 && nextSweep.compareAndSet(sweep, now + ttl)) {
+            sweep(now);
+        }
+    }
+
+    private void expire(String scopeId, Entry entry) {
+        if (scopes.remove(scopeId, entry)) {
+            reaped.increment();
+            entry.scope.destroy();
+        }
+    }
+
+    private static final class Entry {
+
+        private final RedirectScope scope;
+
+        private final long expires;
+
+        Entry(RedirectScope scope, long expires) {
+            this.scope = scope;
+            this.expires = expires;
+        }
+
+        boolean isExpired(long now) {
+            return now - expires >= 0;
+        }
+    }
+}
@@ -41,9 +41,12 @@ package org.glassfish.ozark.cdi;
 
 import org.glassfish.ozark.MvcContextImpl;
 import org.glassfish.ozark.OzarkConfig;
+import org.glassfish.ozark.annotation.Synchronous;
 import org.glassfish.ozark.binding.BindingInterceptorImpl;
 import org.glassfish.ozark.binding.BindingResultImpl;
 import org.glassfish.ozark.binding.ConstraintViolationTranslator;
+import org.glassfish.ozark.cache.FragmentCache;
+import org.glassfish.ozark.cache.PageCache;
 import org.glassfish.ozark.core.*;
 import org.glassfish.ozark.engine.FaceletsViewEngine;
 import org.glassfish.ozark.engine.JspViewEngine;
@@ -63,10 +66,12 @@ import javax.enterprise.inject.spi.AfterBeanDiscovery;
 import javax.enterprise.inject.spi.BeanManager;
 import javax.enterprise.inject.spi.BeforeBeanDiscovery;
 import javax.enterprise.inject.spi.Extension;
+import javax.enterprise.inject.spi.ObserverMethod;
 import javax.enterprise.inject.spi.ProcessObserverMethod;
 import javax.mvc.annotation.RedirectScoped;
 import javax.mvc.event.MvcEvent;
 import java.lang.reflect.Type;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -81,7 +86,17 @@ import java.util.Set;
 @SuppressWarnings("unchecked")
 public class OzarkCdiExtension implements Extension {
 
-    private static Set<Class<? extends MvcEvent>> observedEvents;
+    /**
+     * Immutable set of observed event types. Only replaced while observer methods are
+     * processed during deployment, so that requests can read it without locking.
+     */
+    private static volatile Set<Class<? extends MvcEvent>> observedEvents = Collections.emptySet();
+
+    /**
+     * Immutable set of observer methods annotated by {@link Synchronous}, published in
+     * the same way as the set of observed events.
+     */
+    private static volatile Set<ObserverMethod<?>> synchronousObservers = Collections.emptySet();
 
     /**
      * Before bean discovery.
@@ -103,6 +118,10 @@ public class OzarkCdiExtension implements Extension {
                 BindingInterceptorImpl.class,
                 ConstraintViolationTranslator.class,
 
+                // cache
+                FragmentCache.class,
+                PageCache.class,
+
                 // core
                 Messages.class,
                 ModelsImpl.class,
@@ -134,6 +153,7 @@ public class OzarkCdiExtension implements Extension {
                 BeforeProcessViewEventImpl.class,
                 ControllerRedirectEventImpl.class,
                 MvcEventImpl.class,
+                MvcEventDispatcher.class,
 
                 //locale
                 LocaleRequestFilter.class,
@@ -168,6 +188,10 @@ public class OzarkCdiExtension implements Extension {
             final Class<?> clazz = (Class<?>) type;
             if (MvcEvent.class.isAssignableFrom(clazz)) {
                 addObservedEvent((Class<? extends MvcEvent>) type);
+                if (pom.getAnnotatedMethod().isAnnotationPresent(Synchronous.class)
+                        || pom.getAnnotatedMethod().getDeclaringType().isAnnotationPresent(Synchronous.class)) {
+                    addSynchronousObserver(pom.getObserverMethod());
+                }
             }
         }
     }
@@ -178,10 +202,11 @@ public class OzarkCdiExtension implements Extension {
      * @param eventType event type.
      */
     public static synchronized void addObservedEvent(Class<? extends MvcEvent> eventType) {
-        if (observedEvents == null) {
-            observedEvents = new HashSet<>();
+        if (!observedEvents.contains(eventType)) {
+            final Set<Class<? extends MvcEvent>> events = new HashSet<>(observedEvents);
+            events.add(eventType);
+            observedEvents = Collections.unmodifiableSet(events);
         }
-        observedEvents.add(eventType);
     }
 
     /**
@@ -190,7 +215,32 @@ public class OzarkCdiExtension implements Extension {
      * @param eventType event type.
      * @return outcome of test.
      */
-    public static synchronized boolean isEventObserved(Class<? extends MvcEvent> eventType) {
-        return observedEvents == null ? false : observedEvents.contains(eventType);
+    public static boolean isEventObserved(Class<? extends MvcEvent> eventType) {
+        return observedEvents.contains(eventType);
+    }
+
+    /**
+     * Add observer method to set of observers called on the request thread.
+     *
+     * @param observer observer method.
+     */
+    public static synchronized void addSynchronousObserver(ObserverMethod<?> observer) {
+        if (!synchronousObservers.contains(observer)) {
+            final Set<ObserverMethod<?>> observers = new HashSet<>(synchronousObservers);
+            observers.add(observer);
+            synchronousObservers = Collections.unmodifiableSet(observers);
+        }
+    }
+
+    /**
+     * Determine if an observer method must be called on the request thread, either
+     * because it or its bean class is annotated by {@link Synchronous}.
+     *
+     * @param observer observer method.
+     * @return outcome of test.
+     */
+    public static boolean isSynchronousObserver(ObserverMethod<?> observer) {
+        return synchronousObservers.contains(observer)
+                || observer.getBeanClass().isAnnotationPresent(Synchronous.class);
     }
 }
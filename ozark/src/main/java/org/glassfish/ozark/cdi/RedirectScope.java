@@ -0,0 +1,193 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.cdi;
+
+import org.glassfish.ozark.util.CdiUtils;
+
+import javax.enterprise.context.spi.Contextual;
+import javax.enterprise.context.spi.CreationalContext;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The instances of {@link javax.mvc.annotation.RedirectScoped} beans created for
+ * one redirect, keyed by the passivation ID of their bean. Instances are kept in a
+ * {@link RedirectScopeStore} until the request that follows the redirect has
+ * rendered its view, or until the scope expires. Each instance is kept with its
+ * contextual and creational context, so that it can be destroyed without
+ * resolving its bean.
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+@SuppressWarnings("unchecked")
+public class RedirectScope implements Serializable {
+
+    private static final long serialVersionUID = 2L;
+
+    private final Map<String, ScopedInstance<?>> instances = new HashMap<>();
+
+    private final long created = System.currentTimeMillis();
+
+    /**
+     * Returns the time this scope was created.
+     *
+     * @return creation time in milliseconds since the epoch.
+     */
+    public long getCreated() {
+        return created;
+    }
+
+    /**
+     * Determines if this scope is older than a time to live.
+     *
+     * @param now current time in milliseconds since the epoch.
+     * @param ttl time to live in milliseconds.
+     * @return outcome of test.
+     */
+    public boolean isExpired(long now, long ttl) {
+        return now - created >= ttl;
+    }
+
+    /**
+     * Returns the instance of a bean.
+     *
+     * @param id passivation ID of the bean.
+     * @return the instance, or {@code null}.
+     */
+    public synchronized Object getInstance(String id) {
+        final ScopedInstance<?> scoped = instances.get(id);
+        return scoped != null ? scoped.instance : null;
+    }
+
+    /**
+     * Adds the instance of a bean.
+     *
+     * @param <T> the type of the instance.
+     * @param id passivation ID of the bean.
+     * @param contextual the bean.
+     * @param instance the instance.
+     * @param creational the creational context of the instance.
+     */
+    public synchronized <T> void put(String id, Contextual<T> contextual, T instance,
+                                     CreationalContext<T> creational) {
+        instances.put(id, new ScopedInstance<>(id, contextual, instance, creational));
+    }
+
+    /**
+     * Returns the instances in this scope.
+     *
+     * @return copy of the instances keyed by passivation ID of their bean.
+     */
+    public synchronized Map<String, Object> getInstances() {
+        final Map<String, Object> result = new HashMap<>();
+        instances.forEach((id, scoped) -> result.put(id, scoped.instance));
+        return result;
+    }
+
+    /**
+     * Removes and destroys the instance of a bean.
+     *
+     * @param id passivation ID of the bean.
+     */
+    public void destroy(String id) {
+        final ScopedInstance<?> scoped;
+        synchronized (this) {
+            scoped = instances.remove(id);
+        }
+        if (scoped != null) {
+            scoped.destroy();
+        }
+    }
+
+    /**
+     * Destroys all the instances in this scope.
+     */
+    public void destroy() {
+        final List<ScopedInstance<?>> destroyed;
+        synchronized (this) {
+            if (instances.isEmpty()) {
+                return;
+            }
+            destroyed = new ArrayList<>(instances.values());
+            instances.clear();
+        }
+        destroyed.forEach(ScopedInstance::destroy);
+    }
+
+    /**
+     * An instance with its contextual and creational context. The contextual is not
+     * serialized, it is looked up again by passivation ID if the scope is deserialized,
+     * for example after session replication.
+     *
+     * @param <T> the type of the instance.
+     */
+    private static final class ScopedInstance<T> implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String id;
+
+        private transient Contextual<T> contextual;
+
+        private final T instance;
+
+        private final CreationalContext<T> creational;
+
+        ScopedInstance(String id, Contextual<T> contextual, T instance, CreationalContext<T> creational) {
+            this.id = id;
+            this.contextual = contextual;
+            this.instance = instance;
+            this.creational = creational;
+        }
+
+        void destroy() {
+            if (contextual == null) {
+                contextual = (Contextual<T>) CdiUtils.getApplicationBeanManager().getPassivationCapableBean(id);
+            }
+            if (contextual != null && creational != null) {
+                contextual.destroy(instance, creational);
+                creational.release();
+            }
+        }
+    }
+}
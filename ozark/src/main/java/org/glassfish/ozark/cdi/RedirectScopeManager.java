@@ -40,8 +40,8 @@
 package org.glassfish.ozark.cdi;
 
 import org.glassfish.ozark.Properties;
+import org.glassfish.ozark.annotation.Synchronous;
 import org.glassfish.ozark.event.ControllerRedirectEventImpl;
-import org.glassfish.ozark.util.CdiUtils;
 import org.glassfish.ozark.util.PropertyUtils;
 
 import javax.annotation.PostConstruct;
@@ -49,8 +49,7 @@ import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.context.spi.Contextual;
 import javax.enterprise.context.spi.CreationalContext;
 import javax.enterprise.event.Observes;
-import javax.enterprise.inject.spi.Bean;
-import javax.enterprise.inject.spi.BeanManager;
+import javax.enterprise.inject.Instance;
 import javax.enterprise.inject.spi.PassivationCapable;
 import javax.inject.Inject;
 import javax.mvc.MvcContext;
@@ -60,31 +59,32 @@ import javax.mvc.event.ControllerRedirectEvent;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.servlet.http.HttpSession;
 import javax.ws.rs.container.ContainerResponseContext;
 import javax.ws.rs.core.Configuration;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.UriBuilder;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 /**
- * The ApplicationScoped redirect scope manager.
+ * The ApplicationScoped redirect scope manager. Instances of redirect scoped beans
+ * are kept in a {@link RedirectScopeStore}, keyed by a scope ID passed to the
+ * request that follows the redirect in a cookie or a query parameter.
  *
  * @author Manfred Riem (manfred.riem at oracle.com)
  * @author Santiago Pericas-Geertsen
  */
 @ApplicationScoped
+@Synchronous
 @SuppressWarnings("unchecked")
 public class RedirectScopeManager {
 
     private static final String PREFIX = "org.glassfish.ozark.redirect.";
     private static final String SCOPE_ID = PREFIX + "ScopeId";
-    private static final String INSTANCE = "Instance-";
-    private static final String CREATIONAL = "Creational-";
+    private static final String SCOPE = PREFIX + "Scope";
     private static final String COOKIE_NAME = PREFIX + "Cookie";
+    private static final int DEFAULT_TTL = 600;
+    private static final int DEFAULT_MAX_SCOPES = 10;
 
     /**
      * Stores the HTTP servlet request we are working for.
@@ -111,7 +111,19 @@ public class RedirectScopeManager {
     private MvcContext mvc;
 
     /**
-     * Check that {@literal @}Context injection worked correctly
+     * Store provided by the application, if any.
+     */
+    @Inject
+    private Instance<RedirectScopeStore> stores;
+
+    /**
+     * Stores the redirect scopes.
+     */
+    private RedirectScopeStore store;
+
+    /**
+     * Check that {@literal @}Context injection worked correctly and select the
+     * store for redirect scopes.
      */
     @PostConstruct
     public void init() {
@@ -121,6 +133,19 @@ public class RedirectScopeManager {
                 "make sure you are using a recent version of Jersey.");
         }
 
+        final String storage = PropertyUtils.getProperty(config, Properties.REDIRECT_SCOPE_STORE, "session");
+        if (stores != null && !stores.isUnsatisfied()) {
+            store = stores.get();
+        } else if ("local".equals(storage)) {
+            store = new LocalRedirectScopeStore(getTtl(), TimeUnit.SECONDS);
+        } else if ("cookie".equals(storage)) {
+            store = new CookieRedirectScopeStore(
+                    PropertyUtils.getProperty(config, Properties.REDIRECT_SCOPE_SECRET, null),
+                    PropertyUtils.getProperty(config, Properties.REDIRECT_SCOPE_ENCRYPT, false));
+        } else {
+            store = new SessionRedirectScopeStore(getTtl(), TimeUnit.SECONDS,
+                    PropertyUtils.getProperty(config, Properties.REDIRECT_SCOPE_MAX_SCOPES, DEFAULT_MAX_SCOPES));
+        }
     }
 
     /**
@@ -129,23 +154,12 @@ public class RedirectScopeManager {
      * @param contextual the contextual.
      */
     public void destroy(Contextual contextual) {
-        String scopeId = (String) request.getAttribute(SCOPE_ID);
-        if (null != scopeId) {
-            HttpSession session = request.getSession();
-            if (contextual instanceof PassivationCapable == false) {
-                throw new RuntimeException("Unexpected type for contextual");
-            }
-            PassivationCapable pc = (PassivationCapable) contextual;
-            final String sessionKey = SCOPE_ID + "-" + scopeId;
-            Map<String, Object> scopeMap = (Map<String, Object>) session.getAttribute(sessionKey);
-            if (null != scopeMap) {
-                Object instance = scopeMap.get(INSTANCE + pc.getId());
-                CreationalContext<?> creational = (CreationalContext<?>) scopeMap.get(CREATIONAL + pc.getId());
-                if (null != instance && null != creational) {
-                    contextual.destroy(instance, creational);
-                    creational.release();
-                }
-            }
+        if (contextual instanceof PassivationCapable == false) {
+            throw new RuntimeException("Unexpected type for contextual");
+        }
+        RedirectScope scope = getScope();
+        if (null != scope) {
+            scope.destroy(((PassivationCapable) contextual).getId());
         }
     }
 
@@ -157,25 +171,11 @@ public class RedirectScopeManager {
      * @return the instance, or null.
      */
     public <T> T get(Contextual<T> contextual) {
-        T result = null;
-
-        String scopeId = (String) request.getAttribute(SCOPE_ID);
-        if (null != scopeId) {
-            HttpSession session = request.getSession();
-            if (contextual instanceof PassivationCapable == false) {
-                throw new RuntimeException("Unexpected type for contextual");
-            }
-            PassivationCapable pc = (PassivationCapable) contextual;
-            final String sessionKey = SCOPE_ID + "-" + scopeId;
-            Map<String, Object> scopeMap = (Map<String, Object>) session.getAttribute(sessionKey);
-            if (null != scopeMap) {
-                result = (T) scopeMap.get(INSTANCE + pc.getId());
-            } else {
-                request.setAttribute(SCOPE_ID, null);       // old cookie, force new scope generation
-            }
+        if (contextual instanceof PassivationCapable == false) {
+            throw new RuntimeException("Unexpected type for contextual");
         }
-
-        return result;
+        RedirectScope scope = getScope();
+        return null != scope ? (T) scope.getInstance(((PassivationCapable) contextual).getId()) : null;
     }
 
     /**
@@ -190,23 +190,14 @@ public class RedirectScopeManager {
         T result = get(contextual);
 
         if (result == null) {
-            String scopeId = (String) request.getAttribute(SCOPE_ID);
-            if (null == scopeId) {
-                scopeId = generateScopeId();
+            RedirectScope scope = getScope();
+            if (null == scope) {
+                scope = new RedirectScope();
+                generateScopeId(scope);
             }
-            HttpSession session = request.getSession();
             result = contextual.create(creational);
-            if (contextual instanceof PassivationCapable == false) {
-                throw new RuntimeException("Unexpected type for contextual");
-            }
-            PassivationCapable pc = (PassivationCapable) contextual;
-            final String sessionKey = SCOPE_ID + "-" + scopeId;
-            Map<String, Object> scopeMap = (Map<String, Object>) session.getAttribute(sessionKey);
-            if (null != scopeMap) {
-                session.setAttribute(sessionKey, scopeMap);
-                scopeMap.put(INSTANCE + pc.getId(), result);
-                scopeMap.put(CREATIONAL + pc.getId(), creational);
-            }
+            scope.put(((PassivationCapable) contextual).getId(), contextual, result, creational);
+            store.put(request, (String) request.getAttribute(SCOPE_ID), scope);      // replicate the change
         }
 
         return result;
@@ -214,25 +205,33 @@ public class RedirectScopeManager {
     
     /**
      * Update SCOPE_ID request attribute based on either cookie or URL query param
-     * information received in the request.
+     * information received in the request. If scopes are carried in cookies, rebuild
+     * the scope from the cookie, which is then removed from the client.
      * 
      * @param event the event.
      */
     public void beforeProcessControllerEvent(@Observes BeforeControllerEvent event) {
-        if (usingCookies()) {
-            final Cookie[] cookies = request.getCookies();
-            if (null != cookies) {
-                for (Cookie cookie : cookies) {
-                    if (cookie.getName().equals(COOKIE_NAME)) {
-                        request.setAttribute(SCOPE_ID, cookie.getValue());
-                        return;     // we're done
-                    }
+        if (store instanceof CookieRedirectScopeStore) {
+            final Cookie cookie = getCookie();
+            if (null != cookie) {
+                addCookie("", 0);
+                final RedirectScope scope = ((CookieRedirectScopeStore) store).decode(cookie.getValue(),
+                        TimeUnit.SECONDS.toMillis(getTtl()));
+                if (null != scope) {
+                    generateScopeId(scope);
                 }
             }
+        } else if (usingCookies()) {
+            final Cookie cookie = getCookie();
+            if (null != cookie) {
+                request.setAttribute(SCOPE_ID, cookie.getValue());
+                request.removeAttribute(SCOPE);
+            }
         } else {
             final String scopeId = event.getUriInfo().getQueryParameters().getFirst(SCOPE_ID);
             if (scopeId != null) {
                 request.setAttribute(SCOPE_ID, scopeId);
+                request.removeAttribute(SCOPE);
             }
         }
     }
@@ -243,41 +242,33 @@ public class RedirectScopeManager {
      * @param event the event.
      */
     public void afterProcessViewEvent(@Observes AfterProcessViewEvent event) {
-        if (request.getAttribute(SCOPE_ID) != null) {
-            String scopeId = (String) request.getAttribute(SCOPE_ID);
-            HttpSession session = request.getSession();
-            final String sessionKey = SCOPE_ID + "-" + scopeId;
-            Map<String, Object> scopeMap = (Map<String, Object>) session.getAttribute(sessionKey);
-            if (null != scopeMap) {
-                scopeMap.entrySet().stream().forEach((entrySet) -> {
-                    String key = entrySet.getKey();
-                    Object value = entrySet.getValue();
-                    if (key.startsWith(INSTANCE)) {
-                        BeanManager beanManager = CdiUtils.getApplicationBeanManager();
-                        Bean<?> bean = beanManager.resolve(beanManager.getBeans(value.getClass()));
-                        destroy(bean);
-                    }
-                });
-                scopeMap.clear();
-                session.removeAttribute(sessionKey);
+        String scopeId = (String) request.getAttribute(SCOPE_ID);
+        if (null != scopeId) {
+            RedirectScope scope = store.remove(request, scopeId);
+            request.removeAttribute(SCOPE);
+            if (null != scope) {
+                scope.destroy();
             }
         }
     }
 
     /**
      * Upon detecting a redirect, either add cookie to response or re-write URL of new
-     * location to co-relate next request.
+     * location to co-relate next request. If scopes are carried in cookies, the cookie
+     * holds the scope itself.
      *
      * @param event the event.
      */
     public void controllerRedirectEvent(@Observes ControllerRedirectEvent event) {
         if (request.getAttribute(SCOPE_ID) != null) {
-            if (usingCookies()) {
-                Cookie cookie = new Cookie(COOKIE_NAME, request.getAttribute(SCOPE_ID).toString());
-                cookie.setPath(mvc.getContextPath());
-                cookie.setMaxAge(600);
-                cookie.setHttpOnly(true);
-                response.addCookie(cookie);
+            if (store instanceof CookieRedirectScopeStore) {
+                final RedirectScope scope = store.get(request, request.getAttribute(SCOPE_ID).toString());
+                final String value = scope != null ? ((CookieRedirectScopeStore) store).encode(scope) : null;
+                if (null != value) {
+                    addCookie(value, getTtl());
+                }
+            } else if (usingCookies()) {
+                addCookie(request.getAttribute(SCOPE_ID).toString(), getTtl());
             } else {
                 final ContainerResponseContext crc = ((ControllerRedirectEventImpl) event).getContainerResponseContext();
                 final UriBuilder builder = UriBuilder.fromUri(crc.getStringHeaders().getFirst(HttpHeaders.LOCATION));
@@ -288,23 +279,109 @@ public class RedirectScopeManager {
     }
 
     /**
-     * Generate the scope id.
+     * Generate the scope id and store the scope under it.
      *
+     * @param scope the scope.
      * @return the scope id.
      */
-    private String generateScopeId() {
-        HttpSession session = request.getSession();
-        String scopeId = UUID.randomUUID().toString();
-        String sessionKey = SCOPE_ID + "-" + scopeId;
-        synchronized (this) {
-            while (session.getAttribute(sessionKey) != null) {
-                scopeId = UUID.randomUUID().toString();
-                sessionKey = SCOPE_ID + "-" + scopeId;
+    private String generateScopeId(RedirectScope scope) {
+        String scopeId;
+        do {
+            scopeId = ScopeIdGenerator.generate();
+        } while (!store.putIfAbsent(request, scopeId, scope));
+        request.setAttribute(SCOPE_ID, scopeId);
+        request.setAttribute(SCOPE, scope);
+        return scopeId;
+    }
+
+    /**
+     * Returns the scope of the current request, looking it up in the store only
+     * once per request.
+     *
+     * @return the scope, or {@code null}.
+     */
+    private RedirectScope getScope() {
+        RedirectScope scope = (RedirectScope) request.getAttribute(SCOPE);
+        if (null == scope) {
+            String scopeId = (String) request.getAttribute(SCOPE_ID);
+            if (null != scopeId) {
+                scope = store.get(request, scopeId);
+                if (null != scope) {
+                    request.setAttribute(SCOPE, scope);
+                } else {
+                    request.setAttribute(SCOPE_ID, null);       // old cookie, force new scope generation
+                }
             }
-            session.setAttribute(sessionKey, new HashMap<>());
-            request.setAttribute(SCOPE_ID, scopeId);
         }
-        return scopeId;
+        return scope;
+    }
+
+    /**
+     * Returns the redirect scope cookie sent with the request.
+     *
+     * @return the cookie, or {@code null}.
+     */
+    private Cookie getCookie() {
+        final Cookie[] cookies = request.getCookies();
+        if (null != cookies) {
+            for (Cookie cookie : cookies) {
+                if (cookie.getName().equals(COOKIE_NAME)) {
+                    return cookie;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds the redirect scope cookie to the response.
+     *
+     * @param value value of the cookie.
+     * @param maxAge maximum age in seconds, zero to remove the cookie.
+     */
+    private void addCookie(String value, int maxAge) {
+        Cookie cookie = new Cookie(COOKIE_NAME, value);
+        cookie.setPath(mvc.getContextPath());
+        cookie.setMaxAge(maxAge);
+        cookie.setHttpOnly(true);
+        response.addCookie(cookie);
+    }
+
+    /**
+     * Returns the store for redirect scopes.
+     *
+     * @return the store.
+     */
+    public RedirectScopeStore getStore() {
+        return store;
+    }
+
+    /**
+     * Returns the number of redirect scopes currently stored.
+     *
+     * @return number of live scopes, or -1 if not known by the store.
+     */
+    public long getLiveScopes() {
+        return store.getLiveScopes();
+    }
+
+    /**
+     * Returns the number of redirect scopes destroyed because they expired or
+     * exceeded the maximum number of scopes per session.
+     *
+     * @return number of reaped scopes.
+     */
+    public long getReapedScopes() {
+        return store.getReapedScopes();
+    }
+
+    /**
+     * Gets the time to live of redirect scopes from the application configuration.
+     *
+     * @return time to live in seconds.
+     */
+    private int getTtl() {
+        return PropertyUtils.getProperty(config, Properties.REDIRECT_SCOPE_TTL, DEFAULT_TTL);
     }
 
     /**
@@ -0,0 +1,125 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.cdi;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * <p>Storage of redirect scopes used by {@link RedirectScopeManager}, keyed by scope ID.
+ * Ozark stores scopes in the HTTP session by default, see
+ * {@link SessionRedirectScopeStore}, or in memory on the local node if
+ * {@link org.glassfish.ozark.Properties#REDIRECT_SCOPE_STORE} is set to
+ * {@code "local"}, see {@link LocalRedirectScopeStore}. Applications can provide
+ * their own implementation, for example backed by a shared cache, as a CDI bean.</p>
+ *
+ * <p>Stores must be thread safe. Scopes are removed by the request that follows the
+ * redirect, but a store should expire scopes of redirects that are never followed,
+ * calling {@link RedirectScope#destroy()} on them.</p>
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+public interface RedirectScopeStore {
+
+    /**
+     * Returns a stored scope.
+     *
+     * @param request the current request.
+     * @param scopeId ID of the scope.
+     * @return the scope, or {@code null}.
+     */
+    RedirectScope get(HttpServletRequest request, String scopeId);
+
+    /**
+     * Stores a scope, replacing any scope with the same ID. Also called after an
+     * instance is added to a stored scope, so that stores that copy scopes can
+     * update them.
+     *
+     * @param request the current request.
+     * @param scopeId ID of the scope.
+     * @param scope the scope.
+     */
+    void put(HttpServletRequest request, String scopeId, RedirectScope scope);
+
+    /**
+     * Stores a new scope unless a scope with the same ID is stored. Used to detect
+     * collisions of scope IDs, so stores should implement it atomically; the default
+     * implementation is not atomic.
+     *
+     * @param request the current request.
+     * @param scopeId ID of the scope.
+     * @param scope the scope.
+     * @return {@code true} if the scope was stored.
+     */
+    default boolean putIfAbsent(HttpServletRequest request, String scopeId, RedirectScope scope) {
+        if (get(request, scopeId) != null) {
+            return false;
+        }
+        put(request, scopeId, scope);
+        return true;
+    }
+
+    /**
+     * Removes a scope.
+     *
+     * @param request the current request.
+     * @param scopeId ID of the scope.
+     * @return the removed scope, or {@code null}.
+     */
+    RedirectScope remove(HttpServletRequest request, String scopeId);
+
+    /**
+     * Returns the number of scopes currently stored, as a gauge for monitoring.
+     *
+     * @return number of live scopes, or -1 if not known.
+     */
+    default long getLiveScopes() {
+        return -1;
+    }
+
+    /**
+     * Returns the number of scopes destroyed by this store because they expired or
+     * exceeded a limit, as a counter for monitoring.
+     *
+     * @return number of reaped scopes.
+     */
+    default long getReapedScopes() {
+        return 0;
+    }
+}
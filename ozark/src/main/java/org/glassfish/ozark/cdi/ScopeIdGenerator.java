@@ -0,0 +1,94 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.cdi;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * <p>Generates random 128-bit redirect scope IDs encoded as 22 URL-safe characters.</p>
+ *
+ * <p>Each thread has its own generator, so that threads do not contend for a shared
+ * {@link SecureRandom} as with {@link java.util.UUID#randomUUID()}. The SHA1PRNG
+ * algorithm is preferred because its instances have independent state, whereas
+ * instances of the default native algorithm on Unix share a global lock. Each
+ * generator is seeded once, when its thread first needs it, from a shared default
+ * {@link SecureRandom} that does not block.</p>
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+final class ScopeIdGenerator {
+
+    private static final int ID_BYTES = 16;
+
+    private static final SecureRandom SEEDER = new SecureRandom();
+
+    private static final ThreadLocal<SecureRandom> RANDOM = ThreadLocal.withInitial(ScopeIdGenerator::newRandom);
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private ScopeIdGenerator() {
+    }
+
+    /**
+     * Returns a new scope ID.
+     *
+     * @return the scope ID.
+     */
+    static String generate() {
+        final byte[] bytes = new byte[ID_BYTES];
+        RANDOM.get().nextBytes(bytes);
+        return ENCODER.encodeToString(bytes);
+    }
+
+    private static SecureRandom newRandom() {
+        SecureRandom random;
+        try {
+            random = SecureRandom.getInstance("SHA1PRNG");
+        } catch (NoSuchAlgorithmException e) {
+            random = new SecureRandom();
+        }
+        final byte[] seed = new byte[ID_BYTES * 2];
+        SEEDER.nextBytes(seed);
+        random.setSeed(seed);
+        return random;
+    }
+}
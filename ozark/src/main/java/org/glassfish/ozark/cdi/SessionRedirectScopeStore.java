@@ -0,0 +1,270 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.cdi;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpSessionBindingEvent;
+import javax.servlet.http.HttpSessionBindingListener;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <p>Default {@link RedirectScopeStore} that keeps the scopes of a session in a
+ * single attribute of the HTTP session. A session is only created to store a
+ * scope.</p>
+ *
+ * <p>Scopes of redirects that are never followed are reaped when a new scope is
+ * stored in the same session: scopes older than the time to live are destroyed,
+ * and then the oldest scopes beyond the maximum number of scopes per session.
+ * Scopes left when the session ends are destroyed too.</p>
+ *
+ * <p>The attribute is created and updated while holding the monitor of the
+ * {@link HttpSession}, which servlet containers return as the same object for
+ * all the requests of a session, so that concurrent requests of a session do not
+ * replace each other's scopes.</p>
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+public class SessionRedirectScopeStore implements RedirectScopeStore {
+
+    private static final Logger LOG = Logger.getLogger(SessionRedirectScopeStore.class.getName());
+
+    private static final String SCOPES = "org.glassfish.ozark.redirect.Scopes";
+
+    private final long ttl;
+
+    private final int maxScopes;
+
+    private final LongAdder live = new LongAdder();
+
+    private final LongAdder reaped = new LongAdder();
+
+    /**
+     * Constructor for session stores.
+     *
+     * @param ttl time to live of a scope.
+     * @param unit time unit of {@code ttl}.
+     * @param maxScopes maximum number of scopes per session.
+     */
+    public SessionRedirectScopeStore(long ttl, TimeUnit unit, int maxScopes) {
+        this.ttl = unit.toMillis(ttl);
+        this.maxScopes = maxScopes;
+    }
+
+    @Override
+    public RedirectScope get(HttpServletRequest request, String scopeId) {
+        final Scopes scopes = getScopes(request.getSession(false));
+        if (scopes == null) {
+            return null;
+        }
+        final RedirectScope scope = scopes.get(scopeId);
+        if (scope != null && scope.isExpired(System.currentTimeMillis(), ttl)) {
+            if (scopes.remove(scopeId) != null) {
+                reap(scope);
+            }
+            return null;
+        }
+        return scope;
+    }
+
+    @Override
+    public void put(HttpServletRequest request, String scopeId, RedirectScope scope) {
+        put(request, scopeId, scope, false);
+    }
+
+    @Override
+    public boolean putIfAbsent(HttpServletRequest request, String scopeId, RedirectScope scope) {
+        return put(request, scopeId, scope, true);
+    }
+
+    private boolean put(HttpServletRequest request, String scopeId, RedirectScope scope, boolean onlyIfAbsent) {
+        final HttpSession session = request.getSession();
+        final List<RedirectScope> evicted = new ArrayList<>();
+        final boolean added;
+        synchronized (session) {
+            Scopes scopes = getScopes(session);
+            if (scopes == null) {
+                scopes = new Scopes(this);
+            }
+            scopes.store = this;        // after the session is deserialized
+            added = scopes.put(scopeId, scope, onlyIfAbsent, System.currentTimeMillis(), ttl, maxScopes, evicted);
+            if (added || !onlyIfAbsent) {
+                session.setAttribute(SCOPES, scopes);
+            }
+        }
+        if (added) {
+            live.increment();
+        }
+        evicted.forEach(this::reap);
+        return added;
+    }
+
+    @Override
+    public RedirectScope remove(HttpServletRequest request, String scopeId) {
+        final HttpSession session = request.getSession(false);
+        if (session == null) {
+            return null;
+        }
+        final RedirectScope scope;
+        synchronized (session) {
+            final Scopes scopes = getScopes(session);
+            scope = scopes != null ? scopes.remove(scopeId) : null;
+            if (scope != null) {
+                session.setAttribute(SCOPES, scopes);
+            }
+        }
+        if (scope != null) {
+            live.decrement();
+        }
+        return scope;
+    }
+
+    @Override
+    public long getLiveScopes() {
+        return live.sum();
+    }
+
+    @Override
+    public long getReapedScopes() {
+        return reaped.sum();
+    }
+
+    private static Scopes getScopes(HttpSession session) {
+        return session != null ? (Scopes) session.getAttribute(SCOPES) : null;
+    }
+
+    private void reap(RedirectScope scope) {
+        live.decrement();
+        reaped.increment();
+        try {
+            scope.destroy();
+        } catch (RuntimeException e) {
+            LOG.log(Level.FINE, "Unable to destroy expired redirect scope", e);
+        }
+    }
+
+    /**
+     * The scopes of a session in order of creation. Destroys the remaining scopes
+     * when removed from the session, which only happens when the session ends.
+     */
+    private static final class Scopes implements Serializable, HttpSessionBindingListener {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Map<String, RedirectScope> scopes = new LinkedHashMap<>();
+
+        private transient SessionRedirectScopeStore store;
+
+        Scopes(SessionRedirectScopeStore store) {
+            this.store = store;
+        }
+
+        synchronized RedirectScope get(String scopeId) {
+            return scopes.get(scopeId);
+        }
+
+        synchronized RedirectScope remove(String scopeId) {
+            return scopes.remove(scopeId);
+        }
+
+        /**
+         * Adds or replaces a scope, then removes expired scopes and the oldest scopes
+         * beyond the maximum. A scope with the same ID that is expired is replaced
+         * even if {@code onlyIfAbsent} is set.
+         *
+         * @param scopeId ID of the scope.
+         * @param scope the scope.
+         * @param onlyIfAbsent whether to keep a scope with the same ID that is not expired.
+         * @param now current time in milliseconds since the epoch.
+         * @param ttl time to live in milliseconds.
+         * @param maxScopes maximum number of scopes.
+         * @param evicted list to add removed scopes to.
+         * @return {@code true} if the scope was added, possibly replacing another scope.
+         */
+        synchronized boolean put(String scopeId, RedirectScope scope, boolean onlyIfAbsent, long now, long ttl,
+                                 int maxScopes, List<RedirectScope> evicted) {
+            final RedirectScope existing = scopes.get(scopeId);
+            if (existing != null && existing != scope) {
+                if (onlyIfAbsent && !existing.isExpired(now, ttl)) {
+                    return false;
+                }
+                evicted.add(existing);
+            }
+            scopes.put(scopeId, scope);
+            final boolean added = existing != scope;
+            int excess = scopes.size() - maxScopes;
+            final Iterator<Map.Entry<String, RedirectScope>> it = scopes.entrySet().iterator();
+            while (it.hasNext()) {
+                final Map.Entry<String, RedirectScope> entry = it.next();
+                if (entry.getValue() != scope && (excess > 0 || entry.getValue().isExpired(now, ttl))) {
+                    it.remove();
+                    evicted.add(entry.getValue());
+                    excess--;
+                }
+            }
+            return added;
+        }
+
+        @Override
+        public void valueBound(HttpSessionBindingEvent event) {
+        }
+
+        @Override
+        public void valueUnbound(HttpSessionBindingEvent event) {
+            final List<RedirectScope> remaining;
+            synchronized (this) {
+                remaining = new ArrayList<>(scopes.values());
+                scopes.clear();
+            }
+            if (store != null) {
+                remaining.forEach(store::reap);
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.core;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link javax.servlet.WriteListener} that drains a rendered view to the servlet
+ * output stream as it becomes writable and completes the asynchronous context once
+ * all bytes have been written. The {@link RenderBuffer} is released when done. The
+ * context is also completed if writing fails, once, whether the failure is thrown
+ * to or reported by the container.
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+public class AsyncResponseWriter implements WriteListener {
+
+    private static final Logger LOG = Logger.getLogger(AsyncResponseWriter.class.getName());
+
+    private final AsyncContext asyncContext;
+
+    private final ServletOutputStream out;
+
+    private final RenderBuffer renderBuffer;
+
+    private final byte[] chunk = new byte[BufferPool.CHUNK_SIZE];
+
+    private InputStream in;
+
+    private final AtomicBoolean finished = new AtomicBoolean();
+
+    /**
+     * Constructor for asynchronous response writers.
+     *
+     * @param asyncContext context to complete once done.
+     * @param out servlet output stream in non-blocking mode.
+     * @param renderBuffer buffer holding the rendered view.
+     */
+    public AsyncResponseWriter(AsyncContext asyncContext, ServletOutputStream out, RenderBuffer renderBuffer) {
+        this.asyncContext = asyncContext;
+        this.out = out;
+        this.renderBuffer = renderBuffer;
+    }
+
+    @Override
+    public void onWritePossible() throws IOException {
+        try {
+            if (in == null) {
+                in = renderBuffer.getInputStream();
+            }
+            while (out.isReady()) {
+                final int n = in.read(chunk);
+                if (n < 0) {
+                    done();
+                    return;
+                }
+                out.write(chunk, 0, n);
+            }
+        } catch (IOException | RuntimeException e) {
+            onError(e);
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        LOG.log(Level.FINE, "Unable to write view asynchronously", t);
+        done();
+    }
+
+    private void done() {
+        if (!finished.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (in != null) {
+                in.close();
+            }
+        } catch (IOException e) {
+            // falls through
+        } finally {
+            renderBuffer.release();
+            asyncContext.complete();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.core;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded pool of fixed-size byte arrays used by {@link RenderBuffer} to hold
+ * rendered views. Arrays returned to a full pool are left to the garbage collector.
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+public final class BufferPool {
+
+    /**
+     * Size of every array in the pool.
+     */
+    public static final int CHUNK_SIZE = 8192;
+
+    private static final int MAX_POOLED = 1024;
+
+    private static final Queue<byte[]> pool = new ConcurrentLinkedQueue<>();
+
+    private static final AtomicInteger pooled = new AtomicInteger();
+
+    private BufferPool() {
+    }
+
+    /**
+     * Takes an array from the pool or allocates a new one if the pool is empty.
+     *
+     * @return array of size {@link #CHUNK_SIZE}.
+     */
+    public static byte[] acquire() {
+        final byte[] chunk = pool.poll();
+        if (chunk != null) {
+            pooled.decrementAndGet();
+            return chunk;
+        }
+        return new byte[CHUNK_SIZE];
+    }
+
+    /**
+     * Returns an array to the pool.
+     *
+     * @param chunk array previously obtained from {@link #acquire()}.
+     */
+    public static void release(byte[] chunk) {
+        if (pooled.incrementAndGet() <= MAX_POOLED) {
+            pool.offer(chunk);
+        } else {
+            pooled.decrementAndGet();
+        }
+    }
+}
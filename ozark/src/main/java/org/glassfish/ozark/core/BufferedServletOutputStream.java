@@ -0,0 +1,192 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.core;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Objects;
+
+/**
+ * <p>Adapts the entity stream passed to {@link ViewableWriter} into a
+ * {@link javax.servlet.ServletOutputStream} that can be handed to view engines.</p>
+ *
+ * <p>Small writes are collected into an internal buffer and forwarded as a single
+ * bulk write; writes that are larger than the buffer are passed through directly.
+ * A buffer size of zero or less disables buffering. Calls to {@link #flush()} are
+ * propagated to the underlying stream.</p>
+ *
+ * <p>Non-blocking writes are delegated to the underlying stream if it is a servlet
+ * stream. Other streams block on writes, so they are always ready and a write
+ * listener is notified at once.</p>
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+public class BufferedServletOutputStream extends ServletOutputStream {
+
+    private OutputStream out;
+
+    private final byte[] buffer;
+
+    private int count;
+
+    private long written;
+
+    /**
+     * Constructor for buffered servlet output streams.
+     *
+     * @param out stream to forward output to.
+     * @param bufferSize size of internal buffer, or zero to disable buffering.
+     */
+    public BufferedServletOutputStream(OutputStream out, int bufferSize) {
+        this.out = out;
+        this.buffer = bufferSize > 0 ? new byte[bufferSize] : null;
+    }
+
+    /**
+     * Sets the stream to forward output to. Allows instances to be recycled.
+     *
+     * @param out stream to forward output to.
+     */
+    public void setOutputStream(OutputStream out) {
+        this.out = out;
+        this.count = 0;
+        this.written = 0;
+    }
+
+    /**
+     * Returns the size of the internal buffer.
+     *
+     * @return size of buffer or zero if unbuffered.
+     */
+    public int getBufferSize() {
+        return buffer != null ? buffer.length : 0;
+    }
+
+    /**
+     * Returns the number of bytes written to this stream since the last call to
+     * {@link #setOutputStream}, including those still in the buffer.
+     *
+     * @return number of bytes written.
+     */
+    public long getBytesWritten() {
+        return written + count;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (buffer == null) {
+            out.write(b);
+            written++;
+            return;
+        }
+        if (count == buffer.length) {
+            flushBuffer();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (buffer == null || len >= buffer.length) {
+            // Too large to buffer, write through
+            flushBuffer();
+            out.write(b, off, len);
+            written += len;
+            return;
+        }
+        if (len > buffer.length - count) {
+            flushBuffer();
+        }
+        System.arraycopy(b, off, buffer, count, len);
+        count += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    /**
+     * Flushes this stream but does not close the underlying stream. As stated in
+     * {@link javax.ws.rs.ext.MessageBodyWriter#writeTo}, closing the entity stream
+     * is the responsibility of the JAX-RS runtime.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    /**
+     * Writes any buffered output to the underlying stream without flushing it.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    public void flushBuffer() throws IOException {
+        if (count > 0) {
+            out.write(buffer, 0, count);
+            written += count;
+            count = 0;
+        }
+    }
+
+    @Override
+    public boolean isReady() {
+        return !(out instanceof ServletOutputStream) || ((ServletOutputStream) out).isReady();
+    }
+
+    @Override
+    public void setWriteListener(WriteListener writeListener) {
+        Objects.requireNonNull(writeListener);
+        if (out instanceof ServletOutputStream) {
+            ((ServletOutputStream) out).setWriteListener(writeListener);
+            return;
+        }
+        try {
+            writeListener.onWritePossible();
+        } catch (IOException e) {
+            writeListener.onError(e);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.core;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * <p>Output stream that compresses a view using the "gzip" or "deflate" content
+ * coding. Output is held back until it reaches a minimum size; smaller views are
+ * written as they are. The Content-Encoding header is only set once compression
+ * starts, which is before anything is written to the underlying stream.</p>
+ *
+ * <p>Instances are recycled by {@link ViewOutput}, and so is the {@link java.util.zip.Deflater}
+ * behind them.</p>
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+public class CompressingOutputStream extends OutputStream {
+
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+
+    private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+
+    private final byte[] deflated = new byte[BufferPool.CHUNK_SIZE];
+
+    private final byte[] single = new byte[1];
+
+    private final CRC32 crc = new CRC32();
+
+    private OutputStream out;
+
+    private MultivaluedMap<String, Object> headers;
+
+    private String encoding;
+
+    private byte[] pending = new byte[0];
+
+    private int count;
+
+    private Deflater deflater;
+
+    private boolean gzip;
+
+    private boolean compressing;
+
+    /**
+     * Prepares this stream to compress a view.
+     *
+     * @param out stream to write compressed output to.
+     * @param headers response headers, updated when compression starts.
+     * @param encoding content coding, either {@link #GZIP} or {@link #DEFLATE}.
+     * @param minSize number of bytes below which output is not compressed.
+     */
+    public void open(OutputStream out, MultivaluedMap<String, Object> headers, String encoding, int minSize) {
+        this.out = out;
+        this.headers = headers;
+        this.encoding = encoding;
+        if (pending.length != minSize) {
+            pending = new byte[minSize];
+        }
+        count = 0;
+        compressing = false;
+        final boolean gzip = GZIP.equals(encoding);
+        if (deflater == null || this.gzip != gzip) {
+            if (deflater != null) {
+                deflater.end();
+            }
+            deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, gzip);
+            this.gzip = gzip;
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        single[0] = (byte) b;
+        write(single, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (!compressing) {
+            if (count + len < pending.length) {
+                System.arraycopy(b, off, pending, count, len);
+                count += len;
+                return;
+            }
+            start();
+        }
+        if (gzip) {
+            crc.update(b, off, len);
+        }
+        deflater.setInput(b, off, len);
+        while (!deflater.needsInput()) {
+            deflate();
+        }
+    }
+
+    /**
+     * Flushes the deflater so that everything written so far can be inflated by
+     * the client, then flushes the underlying stream. Output held back below the
+     * minimum size stays held back.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (compressing) {
+            int n;
+            do {
+                n = deflater.deflate(deflated, 0, deflated.length, Deflater.SYNC_FLUSH);
+                if (n > 0) {
+                    out.write(deflated, 0, n);
+                }
+            } while (n == deflated.length);
+        }
+        out.flush();
+    }
+
+    /**
+     * Writes any output held back, compressed or not, followed by the end of the
+     * compressed stream if compressing.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    public void finish() throws IOException {
+        if (!compressing) {
+            out.write(pending, 0, count);
+            count = 0;
+            return;
+        }
+        deflater.finish();
+        while (!deflater.finished()) {
+            deflate();
+        }
+        if (gzip) {
+            writeInt((int) crc.getValue());
+            writeInt((int) deflater.getBytesRead());
+        }
+        compressing = false;
+    }
+
+    /**
+     * Drops references to the response and resets the deflater for the next view.
+     */
+    public void release() {
+        deflater.reset();
+        crc.reset();
+        out = null;
+        headers = null;
+        count = 0;
+        compressing = false;
+    }
+
+    /**
+     * Returns the content coding of this stream.
+     *
+     * @return content coding.
+     */
+    public String getEncoding() {
+        return encoding;
+    }
+
+    private void start() throws IOException {
+        compressing = true;
+        headers.putSingle(HttpHeaders.CONTENT_ENCODING, encoding);
+        if (gzip) {
+            out.write(GZIP_HEADER);
+            crc.update(pending, 0, count);
+        }
+        deflater.setInput(pending, 0, count);
+        while (!deflater.needsInput()) {
+            deflate();
+        }
+        count = 0;
+    }
+
+    private void deflate() throws IOException {
+        final int n = deflater.deflate(deflated);
+        if (n > 0) {
+            out.write(deflated, 0, n);
+        }
+    }
+
+    private void writeInt(int i) throws IOException {
+        out.write(i & 0xff);
+        out.write((i >> 8) & 0xff);
+        out.write((i >> 16) & 0xff);
+        out.write((i >> 24) & 0xff);
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.core;
+
+import org.glassfish.ozark.annotation.AsyncWrite;
+import org.glassfish.ozark.annotation.CacheControl;
+import org.glassfish.ozark.annotation.OutputCache;
+
+import javax.mvc.annotation.View;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Variant;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static java.util.stream.Collectors.toList;
+import static org.glassfish.ozark.util.AnnotationUtils.getAnnotation;
+
+/**
+ * <p>Immutable MVC metadata of a resource method: the view given by {@link javax.mvc.annotation.View}, the variants given by
+ * {@link javax.ws.rs.Produces}, the Cache-Control header given by
+ * {@link org.glassfish.ozark.annotation.CacheControl}, the
+ * {@link org.glassfish.ozark.annotation.OutputCache} and
+ * {@link org.glassfish.ozark.annotation.AsyncWrite} annotations on the method or its
+ * class, and whether it returns {@link java.lang.Void}. Descriptors are registered by
+ * {@link org.glassfish.ozark.jersey.OzarkModelProcessor} when the application starts,
+ * so that filters only need a map look-up per request.</p>
+ *
+ * <p>Methods not seen by the model processor, such as those of sub-resources
+ * located at runtime, are described on first use. Responses not produced by a
+ * resource method, such as those of exception mappers for unmatched requests, get
+ * a descriptor without any metadata.</p>
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+public final class ControllerDescriptor {
+
+    private static final ConcurrentMap<Class<?>, ConcurrentMap<Method, ControllerDescriptor>> registry =
+            new ConcurrentHashMap<>();
+
+    private static final ControllerDescriptor NONE = new ControllerDescriptor();
+
+    private final String view;
+
+    private final List<Variant> variants;
+
+    private final boolean voidObject;
+
+    private final String cacheControl;
+
+    private final OutputCache outputCache;
+
+    private final Boolean asyncWrite;
+
+    private ControllerDescriptor() {
+        view = null;
+        variants = null;
+        voidObject = false;
+        cacheControl = null;
+        outputCache = null;
+        asyncWrite = null;
+    }
+
+    private ControllerDescriptor(Class<?> resourceClass, Method method) {
+        View an = getAnnotation(method, View.class);
+        if (an == null) {
+            an = getAnnotation(resourceClass, View.class);
+        }
+        view = an != null ? an.value() : null;
+
+        Produces produces = method.getAnnotation(Produces.class);
+        if (produces == null) {
+            produces = getAnnotation(resourceClass, Produces.class);
+        }
+        variants = produces == null ? null : Collections.unmodifiableList(Arrays.stream(produces.value())
+                .map(mt -> Variant.mediaTypes(MediaType.valueOf(mt)).build().get(0))
+                .collect(toList()));
+
+        voidObject = method.getReturnType() == Void.class;
+
+        CacheControl cc = getAnnotation(method, CacheControl.class);
+        if (cc == null) {
+            cc = getAnnotation(resourceClass, CacheControl.class);
+        }
+        cacheControl = cc != null ? toHeader(cc) : null;
+
+        OutputCache oc = getAnnotation(method, OutputCache.class);
+        if (oc == null) {
+            oc = getAnnotation(resourceClass, OutputCache.class);
+        }
+        outputCache = oc;
+
+        AsyncWrite aw = getAnnotation(method, AsyncWrite.class);
+        if (aw == null) {
+            aw = getAnnotation(resourceClass, AsyncWrite.class);
+        }
+        asyncWrite = aw != null ? aw.value() : null;
+    }
+
+    private static String toHeader(CacheControl cc) {
+        final StringBuilder sb = new StringBuilder(cc.isPrivate() ? "private" : "public");
+        if (cc.maxAge() >= 0) {
+            sb.append(", max-age=").append(cc.unit().toSeconds(cc.maxAge()));
+        }
+        if (cc.sMaxAge() >= 0) {
+            sb.append(", s-maxage=").append(cc.unit().toSeconds(cc.sMaxAge()));
+        }
+        if (cc.staleWhileRevalidate() >= 0) {
+            sb.append(", stale-while-revalidate=").append(cc.unit().toSeconds(cc.staleWhileRevalidate()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Registers the descriptor of a resource method, unless already registered.
+     *
+     * @param resourceClass class of the resource.
+     * @param method method that handles requests.
+     */
+    public static void register(Class<?> resourceClass, Method method) {
+        of(resourceClass, method);
+    }
+
+    /**
+     * Returns the descriptor of a resource method.
+     *
+     * @param resourceClass class of the resource or {@code null} if none was matched.
+     * @param method method that handles requests or {@code null} if none was matched.
+     * @return descriptor of the method, without any metadata if none was matched.
+     */
+    public static ControllerDescriptor of(Class<?> resourceClass, Method method) {
+        if (resourceClass == null || method == null) {
+            return NONE;
+        }
+        return registry.computeIfAbsent(resourceClass, c -> new ConcurrentHashMap<>())
+                .computeIfAbsent(method, m -> new ControllerDescriptor(resourceClass, m));
+    }
+
+    /**
+     * Returns the view for methods that do not return one.
+     *
+     * @return view declared on the method or its class, or {@code null}.
+     */
+    public String getView() {
+        return view;
+    }
+
+    /**
+     * Returns a variant for each media type produced by the method.
+     *
+     * @return read-only list of variants, or {@code null} if not declared.
+     */
+    public List<Variant> getVariants() {
+        return variants;
+    }
+
+    /**
+     * Returns the value of the Cache-Control header of responses.
+     *
+     * @return header value or {@code null} if not declared.
+     */
+    public String getCacheControl() {
+        return cacheControl;
+    }
+
+    /**
+     * Returns the output cache annotation of the method or its class.
+     *
+     * @return annotation or {@code null} if not declared.
+     */
+    public OutputCache getOutputCache() {
+        return outputCache;
+    }
+
+    /**
+     * Returns the value of the {@link org.glassfish.ozark.annotation.AsyncWrite}
+     * annotation of the method or its class.
+     *
+     * @return value or {@code null} if not declared.
+     */
+    public Boolean getAsyncWrite() {
+        return asyncWrite;
+    }
+
+    /**
+     * Determines if the method is declared to return {@link java.lang.Void}, which
+     * requires a view to be declared.
+     *
+     * @return outcome of test.
+     */
+    public boolean isVoidObject() {
+        return voidObject;
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * <p>A writer that encodes characters into an output stream, similar to
+ * {@link java.io.OutputStreamWriter}. Unlike the latter, instances can be
+ * re-targeted to a different stream and charset so that the encoder and the
+ * character and byte buffers are allocated only once.</p>
+ *
+ * <p>Malformed and unmappable input is replaced, as in {@link java.io.OutputStreamWriter}.
+ * A call to {@link #flush()} does not terminate the input, so a surrogate pair
+ * split across calls is encoded correctly; use {@link #finish()} after the
+ * last character has been written.</p>
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+public class EncodingWriter extends Writer {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+
+    private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+
+    private CharsetEncoder encoder;
+
+    private OutputStream out;
+
+    private long encoded;
+
+    /**
+     * Sets the stream and charset used by this writer. The encoder is only
+     * replaced if the charset differs from the one previously used.
+     *
+     * @param out stream to write encoded bytes to.
+     * @param charset charset to encode characters with.
+     */
+    public void setOutputStream(OutputStream out, Charset charset) {
+        this.out = out;
+        if (encoder == null || !encoder.charset().equals(charset)) {
+            encoder = charset.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        } else {
+            encoder.reset();
+        }
+        chars.clear();
+        bytes.clear();
+        encoded = 0;
+    }
+
+    /**
+     * Returns the number of characters written to this writer since the last call
+     * to {@link #setOutputStream}, including those not yet encoded.
+     *
+     * @return number of characters written.
+     */
+    public long getCharsWritten() {
+        return encoded + chars.position();
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        if (!chars.hasRemaining()) {
+            encodeChars(false);
+        }
+        chars.put((char) c);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        while (len > 0) {
+            if (!chars.hasRemaining()) {
+                encodeChars(false);
+            }
+            final int n = Math.min(len, chars.remaining());
+            chars.put(cbuf, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        while (len > 0) {
+            if (!chars.hasRemaining()) {
+                encodeChars(false);
+            }
+            final int n = Math.min(len, chars.remaining());
+            final int pos = chars.position();
+            str.getChars(off, off + n, chars.array(), chars.arrayOffset() + pos);
+            chars.position(pos + n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        encodeChars(false);
+        writeBytes();
+        out.flush();
+    }
+
+    /**
+     * Encodes any pending characters, terminating the input, and writes the
+     * resulting bytes to the stream. The stream is not flushed.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    public void finish() throws IOException {
+        encodeChars(true);
+        while (encoder.flush(bytes).isOverflow()) {
+            writeBytes();
+        }
+        writeBytes();
+        encoder.reset();
+    }
+
+    /**
+     * Flushes this writer but does not close the underlying stream.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    private void encodeChars(boolean endOfInput) throws IOException {
+        chars.flip();
+        final int pending = chars.remaining();
+        while (true) {
+            final CoderResult cr = encoder.encode(chars, bytes, endOfInput);
+            if (cr.isUnderflow()) {
+                break;
+            }
+            if (cr.isOverflow()) {
+                writeBytes();
+            } else {
+                cr.throwException();
+            }
+        }
+        encoded += pending - chars.remaining();
+        chars.compact();
+    }
+
+    private void writeBytes() throws IOException {
+        if (bytes.position() > 0) {
+            out.write(bytes.array(), bytes.arrayOffset(), bytes.position());
+            bytes.clear();
+        }
+    }
+}
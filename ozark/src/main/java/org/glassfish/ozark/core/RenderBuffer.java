@@ -0,0 +1,272 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.core;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Buffer for a rendered view. Output is kept in arrays taken from {@link BufferPool}
+ * until it exceeds a threshold, at which point it is moved to a temporary file so that
+ * very large pages do not need to be held in memory.</p>
+ *
+ * <p>A buffer must be released by calling {@link #release()} once its contents have
+ * been written out.</p>
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+public class RenderBuffer extends OutputStream {
+
+    private final long spillThreshold;
+
+    private final List<byte[]> chunks = new ArrayList<>();
+
+    private int position = BufferPool.CHUNK_SIZE;
+
+    private long size;
+
+    private File file;
+
+    private OutputStream fileOut;
+
+    /**
+     * Constructor for render buffers.
+     *
+     * @param spillThreshold number of bytes above which contents are moved to a
+     *                       temporary file, or zero or less to never do so.
+     */
+    public RenderBuffer(long spillThreshold) {
+        this.spillThreshold = spillThreshold > 0 ? spillThreshold : Long.MAX_VALUE;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (fileOut == null && size + 1 > spillThreshold) {
+            spill();
+        }
+        if (fileOut != null) {
+            fileOut.write(b);
+        } else {
+            if (position == BufferPool.CHUNK_SIZE) {
+                addChunk();
+            }
+            chunks.get(chunks.size() - 1)[position++] = (byte) b;
+        }
+        size++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (fileOut == null && size + len > spillThreshold) {
+            spill();
+        }
+        if (fileOut != null) {
+            fileOut.write(b, off, len);
+            size += len;
+            return;
+        }
+        while (len > 0) {
+            if (position == BufferPool.CHUNK_SIZE) {
+                addChunk();
+            }
+            final int n = Math.min(len, BufferPool.CHUNK_SIZE - position);
+            System.arraycopy(b, off, chunks.get(chunks.size() - 1), position, n);
+            position += n;
+            off += n;
+            len -= n;
+            size += n;
+        }
+    }
+
+    /**
+     * Returns the number of bytes written to this buffer.
+     *
+     * @return size in bytes.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Determines if the contents of this buffer have been moved to a temporary file.
+     *
+     * @return outcome of test.
+     */
+    public boolean isSpilled() {
+        return file != null;
+    }
+
+    /**
+     * Writes the contents of this buffer to a stream.
+     *
+     * @param out stream to write to.
+     * @throws IOException if an I/O error occurs.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        if (file != null) {
+            fileOut.flush();
+            Files.copy(file.toPath(), out);
+        } else {
+            writeChunks(out);
+        }
+    }
+
+    /**
+     * Returns a copy of the contents of this buffer, which must not have been moved
+     * to a temporary file.
+     *
+     * @return array with contents.
+     */
+    public byte[] toByteArray() {
+        if (file != null) {
+            throw new IllegalStateException("Contents in temporary file");
+        }
+        final byte[] data = new byte[(int) size];
+        final int last = chunks.size() - 1;
+        for (int i = 0; i <= last; i++) {
+            System.arraycopy(chunks.get(i), 0, data, i * BufferPool.CHUNK_SIZE,
+                    i == last ? position : BufferPool.CHUNK_SIZE);
+        }
+        return data;
+    }
+
+    /**
+     * Returns a stream to read the contents of this buffer.
+     *
+     * @return input stream.
+     * @throws IOException if an I/O error occurs.
+     */
+    public InputStream getInputStream() throws IOException {
+        if (file != null) {
+            fileOut.flush();
+            return new FileInputStream(file);
+        }
+        return new ChunkInputStream();
+    }
+
+    /**
+     * Returns all arrays to the pool and deletes the temporary file, if any.
+     */
+    public void release() {
+        chunks.forEach(BufferPool::release);
+        chunks.clear();
+        position = BufferPool.CHUNK_SIZE;
+        size = 0;
+        if (file != null) {
+            try {
+                fileOut.close();
+            } catch (IOException e) {
+                // falls through
+            }
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+            file = null;
+            fileOut = null;
+        }
+    }
+
+    private void addChunk() {
+        chunks.add(BufferPool.acquire());
+        position = 0;
+    }
+
+    private void spill() throws IOException {
+        final File f = File.createTempFile("ozark-", ".view");
+        try {
+            fileOut = new BufferedOutputStream(new FileOutputStream(f), BufferPool.CHUNK_SIZE);
+        } catch (IOException e) {
+            f.delete();
+            throw e;
+        }
+        file = f;
+        writeChunks(fileOut);
+        chunks.forEach(BufferPool::release);
+        chunks.clear();
+    }
+
+    private void writeChunks(OutputStream out) throws IOException {
+        final int last = chunks.size() - 1;
+        for (int i = 0; i <= last; i++) {
+            out.write(chunks.get(i), 0, i == last ? position : BufferPool.CHUNK_SIZE);
+        }
+    }
+
+    /**
+     * Reads the arrays of this buffer in order.
+     */
+    private class ChunkInputStream extends InputStream {
+
+        private int index;
+
+        private int offset;
+
+        @Override
+        public int read() throws IOException {
+            final byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            final int last = chunks.size() - 1;
+            while (index <= last) {
+                final int limit = index == last ? position : BufferPool.CHUNK_SIZE;
+                if (offset < limit) {
+                    final int n = Math.min(len, limit - offset);
+                    System.arraycopy(chunks.get(index), offset, b, off, n);
+                    offset += n;
+                    return n;
+                }
+                index++;
+                offset = 0;
+            }
+            return -1;
+        }
+    }
+}
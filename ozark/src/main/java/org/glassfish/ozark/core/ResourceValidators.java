@@ -0,0 +1,161 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.core;
+
+import org.glassfish.ozark.annotation.LastModified;
+import org.glassfish.ozark.annotation.ResourceVersion;
+
+import javax.ws.rs.ServerErrorException;
+import javax.ws.rs.core.EntityTag;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.time.Instant;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static javax.ws.rs.core.Response.Status.INTERNAL_SERVER_ERROR;
+
+/**
+ * Companion methods of a controller class annotated by
+ * {@link org.glassfish.ozark.annotation.LastModified} or
+ * {@link org.glassfish.ozark.annotation.ResourceVersion}. Methods are looked up once
+ * per class, walking up the hierarchy so that CDI proxies are supported.
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+public final class ResourceValidators {
+
+    private static final ConcurrentMap<Class<?>, ResourceValidators> cache = new ConcurrentHashMap<>();
+
+    private final Method lastModified;
+
+    private final Method version;
+
+    private ResourceValidators(Method lastModified, Method version) {
+        this.lastModified = lastModified;
+        this.version = version;
+    }
+
+    /**
+     * Returns the validators of a controller class.
+     *
+     * @param clazz controller class.
+     * @return validators, or {@code null} if the class has no companion methods.
+     */
+    public static ResourceValidators of(Class<?> clazz) {
+        final ResourceValidators validators = cache.computeIfAbsent(clazz, ResourceValidators::lookup);
+        return validators.lastModified != null || validators.version != null ? validators : null;
+    }
+
+    private static ResourceValidators lookup(Class<?> clazz) {
+        Method lastModified = null;
+        Method version = null;
+        for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Method m : c.getDeclaredMethods()) {
+                if (!Modifier.isPublic(m.getModifiers()) || m.getParameterCount() != 0) {
+                    continue;
+                }
+                if (lastModified == null && m.isAnnotationPresent(LastModified.class)) {
+                    lastModified = m;
+                }
+                if (version == null && m.isAnnotationPresent(ResourceVersion.class)) {
+                    version = m;
+                }
+            }
+        }
+        return new ResourceValidators(lastModified, version);
+    }
+
+    /**
+     * Determines if the template of the view must be taken into account.
+     *
+     * @return outcome of test.
+     */
+    public boolean isIncludeView() {
+        return lastModified != null && lastModified.getAnnotation(LastModified.class).includeView();
+    }
+
+    /**
+     * Calls the {@link org.glassfish.ozark.annotation.LastModified} method, if any.
+     *
+     * @param resource controller instance.
+     * @return time in milliseconds since the epoch or {@code -1} if not available.
+     */
+    public long getLastModified(Object resource) {
+        if (lastModified == null) {
+            return -1;
+        }
+        final Object value = invoke(lastModified, resource);
+        if (value instanceof Date) {
+            return ((Date) value).getTime();
+        } else if (value instanceof Instant) {
+            return ((Instant) value).toEpochMilli();
+        } else if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        return -1;
+    }
+
+    /**
+     * Calls the {@link org.glassfish.ozark.annotation.ResourceVersion} method, if any.
+     *
+     * @param resource controller instance.
+     * @return weak entity tag or {@code null} if not available.
+     */
+    public EntityTag getVersion(Object resource) {
+        if (version == null) {
+            return null;
+        }
+        final Object value = invoke(version, resource);
+        return value != null ? new EntityTag(value.toString(), true) : null;
+    }
+
+    private static Object invoke(Method method, Object resource) {
+        try {
+            return method.invoke(resource);
+        } catch (IllegalAccessException e) {
+            throw new ServerErrorException(INTERNAL_SERVER_ERROR, e);
+        } catch (InvocationTargetException e) {
+            throw new ServerErrorException(INTERNAL_SERVER_ERROR, e.getCause());
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.core;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import javax.ws.rs.core.MultivaluedMap;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+
+/**
+ * <p>Holds the response wrapper, output stream and writer passed to a view engine
+ * to capture its output. {@link ViewableWriter} keeps a bounded pool of instances and
+ * recycles them across renders, so that none of these objects, nor the encoder and
+ * buffers behind them, are allocated per request.</p>
+ *
+ * <p>Output can optionally be compressed, see {@link #compress}.</p>
+ *
+ * <p>An instance is marked as in use between {@link #open} and {@link #release()};
+ * only free instances are returned to the pool.</p>
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+public class ViewOutput {
+
+    private final BufferedServletOutputStream stream;
+
+    private final EncodingWriter encodingWriter;
+
+    private final ViewPrintWriter writer;
+
+    private final ViewResponseWrapper responseWrapper;
+
+    private CompressingOutputStream compressor;
+
+    private boolean compressing;
+
+    private boolean inUse;
+
+    /**
+     * Constructor for view outputs.
+     *
+     * @param response response to wrap.
+     * @param bufferSize size of buffer used to forward output to the entity stream.
+     */
+    public ViewOutput(HttpServletResponse response, int bufferSize) {
+        stream = new BufferedServletOutputStream(null, bufferSize);
+        encodingWriter = new EncodingWriter();
+        writer = new ViewPrintWriter(encodingWriter);
+        responseWrapper = new ViewResponseWrapper(response, this);
+    }
+
+    /**
+     * Prepares this instance to capture the output of a view.
+     *
+     * @param response response to wrap.
+     * @param out stream to forward output to.
+     * @param charset charset used to encode characters written to the writer.
+     * @return response wrapper to pass to the view engine.
+     */
+    public HttpServletResponse open(HttpServletResponse response, OutputStream out, Charset charset) {
+        inUse = true;
+        stream.setOutputStream(out);
+        encodingWriter.setOutputStream(stream, charset);
+        writer.reset();
+        responseWrapper.setResponse(response);
+        return responseWrapper;
+    }
+
+    /**
+     * Compresses the output of the view before forwarding it to the stream passed to
+     * {@link #open}. Must be called after {@link #open} and before any output is written.
+     *
+     * @param out stream passed to {@link #open}.
+     * @param headers response headers, updated if compression starts.
+     * @param encoding content coding.
+     * @param minSize number of bytes below which output is not compressed.
+     */
+    public void compress(OutputStream out, MultivaluedMap<String, Object> headers, String encoding, int minSize) {
+        if (compressor == null) {
+            compressor = new CompressingOutputStream();
+        }
+        compressor.open(out, headers, encoding, minSize);
+        stream.setOutputStream(compressor);
+        compressing = true;
+    }
+
+    /**
+     * Encodes any characters pending in the writer and forwards all buffered output,
+     * compressing it if requested, to the stream passed to {@link #open}, which is then
+     * flushed.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    public void finish() throws IOException {
+        encodingWriter.finish();
+        if (compressing) {
+            stream.flushBuffer();
+            compressor.finish();
+        }
+        stream.flush();
+    }
+
+    /**
+     * Drops the reference to the stream passed to {@link #open} and marks this
+     * instance as free.
+     */
+    public void release() {
+        stream.setOutputStream(null);
+        if (compressing) {
+            compressor.release();
+            compressing = false;
+        }
+        inUse = false;
+    }
+
+    /**
+     * Determines if this instance is currently capturing the output of a view.
+     *
+     * @return outcome of test.
+     */
+    public boolean isInUse() {
+        return inUse;
+    }
+
+    /**
+     * Returns the number of bytes written by the view to the stream or, after encoding,
+     * to the writer of the response wrapper, before compression. Characters still
+     * pending in the writer are only counted after {@link #finish()}.
+     *
+     * @return number of bytes written.
+     */
+    public long getBytesWritten() {
+        return stream.getBytesWritten();
+    }
+
+    /**
+     * Returns the number of characters written by the view to the writer of the
+     * response wrapper.
+     *
+     * @return number of characters written.
+     */
+    public long getCharsWritten() {
+        return encodingWriter.getCharsWritten();
+    }
+
+    /**
+     * Returns the size of the buffer used to forward output.
+     *
+     * @return buffer size.
+     */
+    public int getBufferSize() {
+        return stream.getBufferSize();
+    }
+
+    /**
+     * A print writer that can be reset and that does not close the underlying writer,
+     * as servlet containers close the writer after a forward.
+     */
+    private static class ViewPrintWriter extends PrintWriter {
+
+        ViewPrintWriter(EncodingWriter out) {
+            super(out);
+        }
+
+        void reset() {
+            clearError();
+        }
+
+        @Override
+        public void close() {
+            flush();
+        }
+    }
+
+    /**
+     * A response wrapper that returns the stream and writer of the enclosing view output.
+     */
+    private static class ViewResponseWrapper extends HttpServletResponseWrapper {
+
+        private final ViewOutput output;
+
+        ViewResponseWrapper(HttpServletResponse response, ViewOutput output) {
+            super(response);
+            this.output = output;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            return output.stream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            return output.writer;
+        }
+    }
+}
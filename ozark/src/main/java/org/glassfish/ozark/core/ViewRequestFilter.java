@@ -39,27 +39,63 @@
  */
 package org.glassfish.ozark.core;
 
+import org.glassfish.ozark.Properties;
+import org.glassfish.ozark.annotation.OutputCache;
+import org.glassfish.ozark.cache.CachedPage;
+import org.glassfish.ozark.cache.PageCache;
+import org.glassfish.ozark.cache.PageKey;
 import org.glassfish.ozark.event.BeforeControllerEventImpl;
+import org.glassfish.ozark.event.MvcEventDispatcher;
+import org.glassfish.ozark.jersey.VariantSelector;
 
 import javax.annotation.Priority;
-import javax.enterprise.event.Event;
 import javax.inject.Inject;
+import javax.mvc.MvcContext;
 import javax.mvc.annotation.Controller;
 import javax.mvc.event.BeforeControllerEvent;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.HttpMethod;
 import javax.ws.rs.Priorities;
 import javax.ws.rs.container.ContainerRequestContext;
 import javax.ws.rs.container.ContainerRequestFilter;
 import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Configuration;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
+import java.io.File;
 import java.io.IOException;
+import java.util.Date;
+import java.util.List;
 
+import static javax.mvc.engine.ViewEngine.DEFAULT_VIEW_FOLDER;
+import static javax.mvc.engine.ViewEngine.VIEW_FOLDER;
 import static org.glassfish.ozark.cdi.OzarkCdiExtension.isEventObserved;
+import static org.glassfish.ozark.util.PathUtils.ensureEndingSlash;
+import static org.glassfish.ozark.util.PathUtils.hasStartingSlash;
+import static org.glassfish.ozark.util.PropertyUtils.getProperty;
 
 /**
  * <p>A JAX-RS request filter that fires a {@link javax.mvc.event.BeforeControllerEvent}
  * after the controller has been matched but before it is called.</p>
  *
+ * <p>For GET and HEAD requests, it also calls the companion methods of the controller
+ * annotated by {@link org.glassfish.ozark.annotation.LastModified} or
+ * {@link org.glassfish.ozark.annotation.ResourceVersion}, if any, and aborts the request
+ * with a 304 response if the client's validators still match, marking the request so that
+ * {@link org.glassfish.ozark.core.ViewResponseFilter} does not fire events for a controller
+ * that was never called. Otherwise, the validators are stored as request properties for
+ * {@link org.glassfish.ozark.core.ViewResponseFilter} to set as response headers.</p>
+ *
+ * <p>For GET requests to controllers annotated by {@link org.glassfish.ozark.annotation.OutputCache},
+ * it computes the key of the view in the {@link org.glassfish.ozark.cache.PageCache} and aborts
+ * the request with the cached view, if any. Otherwise, the request may wait for a concurrent
+ * request rendering the same view or claim the rendering of the view for itself. The key
+ * is passed to {@link org.glassfish.ozark.core.ViewableWriter} as a request attribute.</p>
+ *
  * <p>Given that this filter is annotated with {@link javax.mvc.annotation.Controller},
  * it will be called before a controller is called. Priority is set to
  * {@link javax.ws.rs.Priorities#ENTITY_CODER} which means it will be executed
@@ -71,14 +107,31 @@ import static org.glassfish.ozark.cdi.OzarkCdiExtension.isEventObserved;
 @Priority(Priorities.ENTITY_CODER)
 public class ViewRequestFilter implements ContainerRequestFilter {
 
+    static final String LAST_MODIFIED = ViewRequestFilter.class.getName() + ".lastModified";
+    static final String VERSION = ViewRequestFilter.class.getName() + ".version";
+    static final String CACHED = ViewRequestFilter.class.getName() + ".cached";
+    static final String NOT_MODIFIED = ViewRequestFilter.class.getName() + ".notModified";
+
     @Context
     private UriInfo uriInfo;
 
     @Context
     private ResourceInfo resourceInfo;
 
+    @Context
+    private HttpServletRequest request;
+
+    @Context
+    private Configuration config;
+
+    @Inject
+    private MvcEventDispatcher dispatcher;
+
+    @Inject
+    private PageCache pageCache;
+
     @Inject
-    private Event<BeforeControllerEvent> dispatcher;
+    private MvcContext mvc;
 
     @Override
     public void filter(ContainerRequestContext requestContext) throws IOException {
@@ -90,5 +143,194 @@ public class ViewRequestFilter implements ContainerRequestFilter {
             event.setContainerRequestContext(requestContext);
             dispatcher.fire(event);
         }
+
+        // Evaluate validators before calling controller
+        final String method = requestContext.getMethod();
+        if (HttpMethod.GET.equals(method) || HttpMethod.HEAD.equals(method)) {
+            final ResourceValidators validators = ResourceValidators.of(resourceInfo.getResourceClass());
+            if (validators != null && evaluatePreconditions(requestContext, validators)) {
+                return;
+            }
+        }
+
+        // Serve from output cache if possible
+        if (HttpMethod.GET.equals(method)) {
+            final OutputCache an = descriptor().getOutputCache();
+            if (an != null) {
+                serveFromCache(requestContext, an);
+            }
+        }
+    }
+
+    /**
+     * Returns the descriptor of the controller method.
+     *
+     * @return descriptor of the method.
+     */
+    private ControllerDescriptor descriptor() {
+        return ControllerDescriptor.of(resourceInfo.getResourceClass(), resourceInfo.getResourceMethod());
+    }
+
+    /**
+     * Aborts the request with a cached view if there is one that is fresh, or that has
+     * expired while another request is rendering it. Otherwise, it may wait for a
+     * concurrent request to render the view, or claim the rendering for this request.
+     *
+     * @param requestContext request context.
+     * @param an cache annotation on controller method or class.
+     */
+    private void serveFromCache(ContainerRequestContext requestContext, OutputCache an) {
+        final PageKey key = pageCache.createKey(resourceInfo.getResourceMethod(), an, descriptor().getVariants(),
+                request, an.varyByLocale() ? mvc.getLocale() : null);
+        request.setAttribute(PageCache.PAGE_KEY, key);
+
+        CachedPage page = lookup(key);
+        if (page == null && an.coalesceMillis() > 0) {
+            if (claim(key)) {
+                return;
+            }
+            try {
+                pageCache.await(key);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            page = lookup(key);
+        }
+        if (page != null) {
+            if (!page.isExpired(System.currentTimeMillis()) || !claim(key)) {
+                abortWith(requestContext, page);
+            } else {
+                page.release();
+            }
+        }
+    }
+
+    /**
+     * Looks up a view in the cache, first compressed with the coding that the client
+     * prefers, if compression is enabled, and then not compressed.
+     *
+     * @param key key of the view.
+     * @return cached view or {@code null}.
+     */
+    private CachedPage lookup(PageKey key) {
+        final String encoding = getProperty(config, Properties.COMPRESSION, false)
+                ? VariantSelector.selectEncoding(request, CompressingOutputStream.GZIP, CompressingOutputStream.DEFLATE)
+                : null;
+        final CachedPage page = encoding != null ? pageCache.get(key, encoding) : null;
+        return page != null ? page : pageCache.get(key, null);
+    }
+
+    /**
+     * Claims the rendering of a view for this request.
+     *
+     * @param key key of the view.
+     * @return {@code true} if claimed.
+     */
+    private boolean claim(PageKey key) {
+        final PageCache.Flight flight = pageCache.lead(key);
+        if (flight != null) {
+            request.setAttribute(PageCache.FLIGHT, flight);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Aborts the request with a cached view, or with a 304 response if it has an ETag
+     * that matches the request. The page is released once its body has been written.
+     *
+     * @param requestContext request context.
+     * @param page cached view.
+     */
+    private void abortWith(ContainerRequestContext requestContext, CachedPage page) {
+        request.removeAttribute(PageCache.PAGE_KEY);
+        requestContext.setProperty(CACHED, Boolean.TRUE);
+
+        final Response.ResponseBuilder builder;
+        if (page.getETag() != null
+                && ViewableWriter.matchesETag(request.getHeader(HttpHeaders.IF_NONE_MATCH), page.getETag())) {
+            builder = Response.notModified();
+            page.release();
+        } else {
+            final StreamingOutput body = out -> {
+                try {
+                    page.writeBody(out);
+                } finally {
+                    page.release();
+                }
+            };
+            builder = Response.ok(body, page.getMediaType())
+                    .header(HttpHeaders.CONTENT_LENGTH, page.getLength())
+                    .header(HttpHeaders.CONTENT_ENCODING, page.getContentEncoding());
+        }
+        requestContext.abortWith(builder
+                .header(HttpHeaders.ETAG, page.getETag())
+                .header(HttpHeaders.VARY, page.getVary())
+                .build());
+    }
+
+    /**
+     * Calls the companion methods of the controller and either aborts the request with
+     * a 304 response or stores the validators as request properties.
+     *
+     * @param requestContext request context.
+     * @param validators companion methods of the controller.
+     * @return {@code true} if the request was aborted.
+     */
+    private boolean evaluatePreconditions(ContainerRequestContext requestContext, ResourceValidators validators) {
+        final List<Object> resources = uriInfo.getMatchedResources();
+        if (resources.isEmpty()) {
+            return false;
+        }
+        final Object resource = resources.get(0);
+
+        long time = validators.getLastModified(resource);
+        if (time >= 0 && validators.isIncludeView()) {
+            time = Math.max(time, getViewLastModified());
+        }
+        final Date lastModified = time >= 0 ? new Date(time) : null;
+        final EntityTag version = validators.getVersion(resource);
+
+        final Response.ResponseBuilder builder;
+        if (lastModified != null && version != null) {
+            builder = requestContext.getRequest().evaluatePreconditions(lastModified, version);
+        } else if (lastModified != null) {
+            builder = requestContext.getRequest().evaluatePreconditions(lastModified);
+        } else if (version != null) {
+            builder = requestContext.getRequest().evaluatePreconditions(version);
+        } else {
+            return false;
+        }
+
+        if (builder != null) {
+            if (lastModified != null) {
+                builder.lastModified(lastModified);
+            }
+            requestContext.setProperty(NOT_MODIFIED, Boolean.TRUE);
+            requestContext.abortWith(builder.build());
+            return true;
+        }
+        requestContext.setProperty(LAST_MODIFIED, lastModified);
+        requestContext.setProperty(VERSION, version);
+        return false;
+    }
+
+    /**
+     * Returns the modification time of the template named by {@link javax.mvc.annotation.View}
+     * on the controller method or class. Templates that are not files, e.g. in a packed WAR,
+     * are ignored.
+     *
+     * @return time in milliseconds since the epoch or {@code 0} if not available.
+     */
+    private long getViewLastModified() {
+        String view = descriptor().getView();
+        if (view == null) {
+            return 0;
+        }
+        if (!hasStartingSlash(view)) {
+            view = ensureEndingSlash(getProperty(config, VIEW_FOLDER, DEFAULT_VIEW_FOLDER)) + view;
+        }
+        final String path = request.getServletContext().getRealPath(view);
+        return path != null ? new File(path).lastModified() : 0;
     }
 }
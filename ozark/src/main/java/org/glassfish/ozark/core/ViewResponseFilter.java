@@ -39,19 +39,19 @@
  */
 package org.glassfish.ozark.core;
 
+import org.glassfish.ozark.cache.PageCache;
+import org.glassfish.ozark.cache.PageKey;
 import org.glassfish.ozark.event.AfterControllerEventImpl;
 import org.glassfish.ozark.event.ControllerRedirectEventImpl;
+import org.glassfish.ozark.event.MvcEventDispatcher;
 import org.glassfish.ozark.jersey.VariantSelector;
 
 import javax.annotation.Priority;
-import javax.enterprise.event.Event;
 import javax.inject.Inject;
 import javax.mvc.Viewable;
 import javax.mvc.annotation.Controller;
-import javax.mvc.annotation.View;
 import javax.mvc.event.AfterControllerEvent;
 import javax.mvc.event.ControllerRedirectEvent;
-import javax.mvc.event.MvcEvent;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.Priorities;
 import javax.ws.rs.ServerErrorException;
@@ -62,14 +62,15 @@ import javax.ws.rs.container.ResourceInfo;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.core.Variant;
 import java.io.IOException;
-import java.lang.reflect.Method;
 import java.net.URI;
+import java.util.List;
 
 import static javax.ws.rs.core.Response.Status.*;
 import static org.glassfish.ozark.cdi.OzarkCdiExtension.isEventObserved;
-import static org.glassfish.ozark.util.AnnotationUtils.getAnnotation;
 import static org.glassfish.ozark.util.PathUtils.*;
 
 /**
@@ -83,7 +84,23 @@ import static org.glassfish.ozark.util.PathUtils.*;
  * the method returns void (no entity). If unable to compute the final Content-Type,
  * e.g. if the controller method is not annotated by {@code @Produces}, it defaults to
  * {@code text/html}. If the method does not return void (has an entity), the computation
- * of the Content-Type is done by JAX-RS and is available via {@code responseContext}.</p>
+ * of the Content-Type is done by JAX-RS and is available via {@code responseContext}.
+ * In either case, the Vary header lists the request headers used by the selection if the
+ * method produces more than one media type. No view is set for a 304 response, e.g. after the request was aborted by
+ * {@link org.glassfish.ozark.core.ViewRequestFilter}.</p>
+ *
+ * <p>Views of controllers annotated by {@link org.glassfish.ozark.annotation.OutputCache}
+ * are only stored in the {@link org.glassfish.ozark.cache.PageCache} if the response is
+ * successful; otherwise, concurrent requests waiting for the view are released. Responses
+ * served from the cache by {@link org.glassfish.ozark.core.ViewRequestFilter} are left
+ * untouched, and so are 304 responses of requests aborted by its validators; no
+ * {@link javax.mvc.event.AfterControllerEvent} is fired for either, as the controller was
+ * not called. Both only get the Cache-Control header given by
+ * {@link org.glassfish.ozark.annotation.CacheControl}, which is set on successful and
+ * 304 responses.</p>
+ *
+ * <p>Views of successful responses are marked for {@link org.glassfish.ozark.core.ViewableWriter},
+ * which only computes ETags and evaluates If-None-Match for those.</p>
  *
  * <p>Given that this filter is annotated with {@link javax.mvc.annotation.Controller}, it
  * will be called after every controller method returns. Priority is set to
@@ -108,14 +125,27 @@ public class ViewResponseFilter implements ContainerResponseFilter {
     private HttpServletRequest request;
 
     @Inject
-    private Event<MvcEvent> dispatcher;
+    private MvcEventDispatcher dispatcher;
 
     @Inject
     private Messages messages;
 
+    @Inject
+    private PageCache pageCache;
+
     @Override
     public void filter(ContainerRequestContext requestContext,
                        ContainerResponseContext responseContext) throws IOException {
+        final ControllerDescriptor descriptor =
+                ControllerDescriptor.of(resourceInfo.getResourceClass(), resourceInfo.getResourceMethod());
+
+        // Nothing else to do if served from output cache or validators without calling the controller
+        if (requestContext.getProperty(ViewRequestFilter.CACHED) != null
+                || requestContext.getProperty(ViewRequestFilter.NOT_MODIFIED) != null) {
+            setCacheControl(descriptor, responseContext);
+            return;
+        }
+
         // Fire AfterControllerEvent event
         if (isEventObserved(AfterControllerEvent.class)) {
             final AfterControllerEventImpl event = new AfterControllerEventImpl();
@@ -126,49 +156,95 @@ public class ViewResponseFilter implements ContainerResponseFilter {
             dispatcher.fire(event);
         }
 
-        final Method method = resourceInfo.getResourceMethod();
-        final Class<?> returnType = method.getReturnType();
+        // Set validators computed before calling the controller
+        if (responseContext.getStatusInfo().getFamily() == Response.Status.Family.SUCCESSFUL) {
+            final Object lastModified = requestContext.getProperty(ViewRequestFilter.LAST_MODIFIED);
+            if (lastModified != null && !responseContext.getHeaders().containsKey(HttpHeaders.LAST_MODIFIED)) {
+                responseContext.getHeaders().putSingle(HttpHeaders.LAST_MODIFIED, lastModified);
+            }
+            final Object version = requestContext.getProperty(ViewRequestFilter.VERSION);
+            if (version != null && !responseContext.getHeaders().containsKey(HttpHeaders.ETAG)) {
+                responseContext.getHeaders().putSingle(HttpHeaders.ETAG, version);
+            }
+        }
 
         // Wrap entity type into Viewable, possibly looking at @View
         Object entity = responseContext.getEntity();
         final Class<?> entityType = entity != null ? entity.getClass() : null;
         if (entityType == null) {       // NO_CONTENT
-            View an = getAnnotation(method, View.class);
-            if (an == null) {
-                an = getAnnotation(resourceInfo.getResourceClass(), View.class);
-            }
-            if (an != null) {
-                MediaType contentType = VariantSelector.selectVariant(request, resourceInfo);
+            final String view = descriptor.getView();
+            if (view != null && responseContext.getStatus() != NOT_MODIFIED.getStatusCode()) {
+                MediaType contentType = null;
+                final List<Variant> variants = descriptor.getVariants();
+                if (variants != null) {
+                    final VariantSelector.Selection selection = VariantSelector.select(request, variants);
+                    contentType = selection.getMediaType();
+                    if (variants.size() > 1) {
+                        selection.getVary().forEach(h -> ViewableWriter.addVary(responseContext.getHeaders(), h));
+                    }
+                }
                 if (contentType == null) {
                     contentType = MediaType.TEXT_HTML_TYPE;     // default
                 }
-                responseContext.setEntity(new Viewable(an.value()), null, contentType);
+                responseContext.setEntity(new Viewable(view), null, contentType);
                 // If the entity is null the status will be set to 204 by Jersey. For void methods we need to
                 // set the status to 200 unless no other status was set by e.g. throwing an Exception.
                 responseContext.setStatusInfo(responseContext.getStatusInfo() == NO_CONTENT ? OK : responseContext.getStatusInfo());
-            } else if (returnType == Void.class) {
+            } else if (descriptor.isVoidObject()) {
                 throw new ServerErrorException(messages.get("VoidControllerNoView", resourceInfo.getResourceMethod()), INTERNAL_SERVER_ERROR);
             }
-        } else if (entityType != Viewable.class) {
-            final String view = entity.toString();
-            if (view == null) {
-                throw new ServerErrorException(messages.get("EntityToStringNull", resourceInfo.getResourceMethod()), INTERNAL_SERVER_ERROR);
+        } else {
+            if (entityType != Viewable.class) {
+                final String view = entity.toString();
+                if (view == null) {
+                    throw new ServerErrorException(messages.get("EntityToStringNull", resourceInfo.getResourceMethod()), INTERNAL_SERVER_ERROR);
+                }
+                responseContext.setEntity(new Viewable(view), null, responseContext.getMediaType());
+            }
+            // Media type negotiated by JAX-RS from the variants given by @Produces
+            final List<Variant> variants = descriptor.getVariants();
+            if (variants != null && variants.size() > 1) {
+                ViewableWriter.addVary(responseContext.getHeaders(), HttpHeaders.ACCEPT);
             }
-            responseContext.setEntity(new Viewable(view), null, responseContext.getMediaType());
         }
 
         // Redirect logic, entity must be a Viewable if not null
         entity = responseContext.getEntity();
         if (entity != null) {
             final String view = ((Viewable) entity).getView();
-            final String uri = uriInfo.getBaseUri() + noStartingSlash(noPrefix(view, REDIRECT));
             if (view.startsWith(REDIRECT)) {
+                final String uri = uriInfo.getBaseUri() + noStartingSlash(noPrefix(view, REDIRECT));
                 responseContext.setStatusInfo(SEE_OTHER);
                 responseContext.getHeaders().putSingle(HttpHeaders.LOCATION, uri);
                 responseContext.setEntity(null);
             }
         }
 
+        setCacheControl(descriptor, responseContext);
+
+        // Only successful views can be tagged, see ViewableWriter
+        if (responseContext.getEntity() != null
+                && responseContext.getStatusInfo().getFamily() == Response.Status.Family.SUCCESSFUL) {
+            request.setAttribute(ViewableWriter.SUCCESSFUL, Boolean.TRUE);
+        }
+
+        // Keep view cacheable only if successful, see ViewRequestFilter
+        final PageKey pageKey = (PageKey) request.getAttribute(PageCache.PAGE_KEY);
+        if (pageKey != null) {
+            if (responseContext.getEntity() != null && responseContext.getStatus() == OK.getStatusCode()) {
+                for (String header : pageKey.getVaryByHeader()) {
+                    ViewableWriter.addVary(responseContext.getHeaders(), header);
+                }
+            } else {
+                request.removeAttribute(PageCache.PAGE_KEY);
+                final PageCache.Flight flight = (PageCache.Flight) request.getAttribute(PageCache.FLIGHT);
+                if (flight != null) {
+                    request.removeAttribute(PageCache.FLIGHT);
+                    pageCache.complete(flight);
+                }
+            }
+        }
+
         // Fire ControllerRedirectEvent event
         if (isEventObserved(ControllerRedirectEvent.class)) {
             final int status = responseContext.getStatus();
@@ -184,4 +260,20 @@ public class ViewResponseFilter implements ContainerResponseFilter {
             }
         }
     }
+
+    /**
+     * Sets the Cache-Control header given by {@link org.glassfish.ozark.annotation.CacheControl}
+     * on successful and 304 responses, unless already set by the controller.
+     *
+     * @param descriptor descriptor of the controller method.
+     * @param responseContext response context.
+     */
+    private static void setCacheControl(ControllerDescriptor descriptor, ContainerResponseContext responseContext) {
+        final int status = responseContext.getStatus();
+        if (descriptor.getCacheControl() != null
+                && (status == OK.getStatusCode() || status == NOT_MODIFIED.getStatusCode())
+                && !responseContext.getHeaders().containsKey(HttpHeaders.CACHE_CONTROL)) {
+            responseContext.getHeaders().putSingle(HttpHeaders.CACHE_CONTROL, descriptor.getCacheControl());
+        }
+    }
 }
@@ -39,12 +39,18 @@
  */
 package org.glassfish.ozark.core;
 
+import org.glassfish.ozark.Properties;
+import org.glassfish.ozark.cache.CachedPage;
+import org.glassfish.ozark.cache.FragmentCache;
+import org.glassfish.ozark.cache.PageCache;
+import org.glassfish.ozark.cache.PageKey;
 import org.glassfish.ozark.engine.ViewEngineContextImpl;
 import org.glassfish.ozark.engine.ViewEngineFinder;
 import org.glassfish.ozark.event.AfterProcessViewEventImpl;
 import org.glassfish.ozark.event.BeforeProcessViewEventImpl;
+import org.glassfish.ozark.event.MvcEventDispatcher;
+import org.glassfish.ozark.jersey.VariantSelector;
 
-import javax.enterprise.event.Event;
 import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
 import javax.mvc.Models;
@@ -54,11 +60,10 @@ import javax.mvc.engine.ViewEngine;
 import javax.mvc.engine.ViewEngineException;
 import javax.mvc.event.AfterProcessViewEvent;
 import javax.mvc.event.BeforeProcessViewEvent;
-import javax.mvc.event.MvcEvent;
+import javax.servlet.AsyncContext;
 import javax.servlet.RequestDispatcher;
 import javax.servlet.ServletException;
 import javax.servlet.ServletOutputStream;
-import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletRequestWrapper;
 import javax.servlet.http.HttpServletResponse;
@@ -69,21 +74,28 @@ import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.container.ResourceInfo;
 import javax.ws.rs.core.Configuration;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.UriInfo;
 import javax.ws.rs.ext.MessageBodyWriter;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
 import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
 
 import static javax.ws.rs.core.Response.Status.INTERNAL_SERVER_ERROR;
 import static org.glassfish.ozark.cdi.OzarkCdiExtension.isEventObserved;
 import static org.glassfish.ozark.util.PathUtils.ensureStartingSlash;
+import static org.glassfish.ozark.util.PropertyUtils.getProperty;
 
 /**
  * <p>Body writer for a {@link javax.mvc.Viewable} instance. Looks for a
@@ -95,7 +107,34 @@ import static org.glassfish.ozark.util.PathUtils.ensureStartingSlash;
  * the lookup mechanism.</p>
  *
  * <p>The charset for the response is obtained from the media type, and defaults to
- * UTF-8.</p>
+ * UTF-8. Output from the view engine is forwarded to the entity stream in bulk using a
+ * buffer whose size can be configured via {@link org.glassfish.ozark.Properties#VIEW_BUFFER_SIZE}.
+ * The response wrapper, stream and writer passed to the engine are recycled using a
+ * bounded pool owned by this writer, see {@link org.glassfish.ozark.core.ViewOutput}.</p>
+ *
+ * <p>Views can optionally be rendered completely before being written, in which case a
+ * Content-Length header is set and a failure in the view engine can still be mapped to
+ * an error response, see {@link org.glassfish.ozark.Properties#BUFFERED_RENDER}. Views can
+ * also be written without blocking the container thread, see
+ * {@link org.glassfish.ozark.annotation.AsyncWrite}. In both cases, the rendered view is
+ * kept in a {@link org.glassfish.ozark.core.RenderBuffer}.</p>
+ *
+ * <p>Views can be compressed as they are written, see
+ * {@link org.glassfish.ozark.Properties#COMPRESSION}. The content coding is selected from
+ * the Accept-Encoding header by {@link org.glassfish.ozark.jersey.VariantSelector}, and
+ * Content-Length, if set, is that of the compressed view.</p>
+ *
+ * <p>A strong ETag can be computed over the rendered view, see
+ * {@link org.glassfish.ozark.Properties#ETAG}. If it matches the If-None-Match header of
+ * the request, a 304 response is returned instead of the view. As required by RFC 7232,
+ * only views of successful responses are tagged, as marked by
+ * {@link org.glassfish.ozark.core.ViewResponseFilter}; error views, e.g. those of
+ * exception mappers, are always written.</p>
+ *
+ * <p>Views of controllers annotated by {@link org.glassfish.ozark.annotation.OutputCache}
+ * are stored in, and served from, a {@link org.glassfish.ozark.cache.PageCache} without
+ * calling the view engine. Templates can also cache sections of views using the
+ * {@link org.glassfish.ozark.cache.FragmentCache} bound as {@code mvcFragments}.</p>
  *
  * @author Santiago Pericas-Geertsen
  */
@@ -104,6 +143,30 @@ public class ViewableWriter implements MessageBodyWriter<Viewable> {
 
     public static final String CONTENT_TYPE = "Content-Type";
     public static final Charset UTF8 = Charset.forName("UTF-8");
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+    public static final int DEFAULT_SPILL_THRESHOLD = 1024 * 1024;
+    public static final int DEFAULT_COMPRESSION_MIN_SIZE = 1024;
+    public static final String DEFAULT_COMPRESSION_MEDIA_TYPES =
+            "text/*,application/xml,application/xhtml+xml,application/json,application/javascript";
+
+    /**
+     * Request attribute set by {@link ViewResponseFilter} if the view is that of a
+     * successful response, which can be tagged.
+     */
+    static final String SUCCESSFUL = ViewableWriter.class.getName() + ".successful";
+
+    private static final String[] NOT_MODIFIED_HEADERS = {
+            HttpHeaders.ETAG, HttpHeaders.CACHE_CONTROL, HttpHeaders.EXPIRES, HttpHeaders.VARY,
+            HttpHeaders.CONTENT_LOCATION, HttpHeaders.DATE
+    };
+
+    private static final ConcurrentMap<String, Charset> CHARSETS = new ConcurrentHashMap<>();
+
+    private static final ConcurrentMap<String, List<MediaType>> COMPRESSION_MEDIA_TYPES = new ConcurrentHashMap<>();
+
+    private static final int MAX_POOLED_OUTPUTS = 64;
+
+    private final Queue<ViewOutput> viewOutputs = new ArrayBlockingQueue<>(MAX_POOLED_OUTPUTS);
 
     @Inject
     private Instance<Models> modelsInstance;
@@ -130,11 +193,17 @@ public class ViewableWriter implements MessageBodyWriter<Viewable> {
     private Messages messages;
 
     @Inject
-    private Event<MvcEvent> dispatcher;
+    private MvcEventDispatcher dispatcher;
 
     @Inject
     private MvcContext mvc;
 
+    @Inject
+    private PageCache pageCache;
+
+    @Inject
+    private FragmentCache fragmentCache;
+
     @Override
     public boolean isWriteable(Class<?> aClass, Type type, Annotation[] annotations, MediaType mediaType) {
         return aClass == Viewable.class;
@@ -153,9 +222,27 @@ public class ViewableWriter implements MessageBodyWriter<Viewable> {
     public void writeTo(Viewable viewable, Class<?> aClass, Type type, Annotation[] annotations, MediaType mediaType,
                         MultivaluedMap<String, Object> headers, OutputStream out)
             throws IOException, WebApplicationException {
+        // Serve from output cache if possible, see ViewRequestFilter
+        final PageKey pageKey = (PageKey) request.getAttribute(PageCache.PAGE_KEY);
+        final String encoding = getCompressionEncoding(headers, mediaType);
+        if (pageKey != null) {
+            final CachedPage page = pageCache.get(pageKey, encoding);
+            if (page != null) {
+                if (!page.isExpired(System.currentTimeMillis())) {
+                    completeFlight();
+                    writeCachedPage(page, headers, out);
+                    return;
+                }
+                page.release();
+            }
+        }
+
         // Find engine for this Viewable
         final ViewEngine engine = engineFinder.find(viewable);
         if (engine == null) {
+            if (pageKey != null) {
+                completeFlight();       // not cacheable
+            }
             RequestDispatcher requestDispatcher =
                     request.getServletContext().getRequestDispatcher(ensureStartingSlash(viewable.getView()));
             if (requestDispatcher != null) {
@@ -179,38 +266,122 @@ public class ViewableWriter implements MessageBodyWriter<Viewable> {
             return;     // null engine, can't proceed
         }
         
-        // Create wrapper for response
-        final ServletOutputStream responseStream = new ServletOutputStream() {
-            @Override
-            public void write(final int b) throws IOException {
-                out.write(b);
-            }
+        // Render into a buffer first if the response is to be written asynchronously or with a length
+        final boolean async = isAsyncWrite(headers);
+        final boolean etag = isETag(headers);
+        final RenderBuffer renderBuffer = async || etag || pageKey != null
+                || getProperty(config, Properties.BUFFERED_RENDER, false)
+                ? new RenderBuffer(getProperty(config, Properties.RENDER_SPILL_THRESHOLD, DEFAULT_SPILL_THRESHOLD))
+                : null;
+        final HashingOutputStream hashingStream = etag ? new HashingOutputStream(renderBuffer) : null;
+
+        boolean released = false;
+        try {
+            processView(engine, viewable, headers,
+                    hashingStream != null ? hashingStream : renderBuffer != null ? renderBuffer : out, encoding);
 
-            @Override
-            public boolean isReady() {
-                return false;
+            // Set ETag and store in output cache
+            final String tag = etag ? "\"" + Long.toHexString(hashingStream.getHash()) + "\"" : null;
+            if (tag != null) {
+                headers.putSingle(HttpHeaders.ETAG, tag);
+            }
+            if (pageKey != null) {
+                if (!renderBuffer.isSpilled()) {
+                    pageCache.put(pageKey, encoding, renderBuffer.toByteArray(), mediaType, headers);
+                }
+                completeFlight();
             }
 
-            @Override
-            public void setWriteListener(WriteListener writeListener) {
-                throw new UnsupportedOperationException("Not supported");
+            // Stop here if the client has a matching copy
+            if (tag != null && matchesETag(request.getHeader(HttpHeaders.IF_NONE_MATCH), tag)) {
+                writeNotModified(headers);
+                return;
             }
-        };
-        final PrintWriter responseWriter = new PrintWriter(new OutputStreamWriter(responseStream, getCharset(headers)));
-        final HttpServletResponse responseWrapper = new HttpServletResponseWrapper(response) {
 
-            @Override
-            public ServletOutputStream getOutputStream() throws IOException {
-                return responseStream;
+            // Hand over rendered view to the container
+            if (async) {
+                writeAsync(renderBuffer, headers, out);
+                released = true;        // by the write listener
+            } else if (renderBuffer != null) {
+                headers.putSingle(HttpHeaders.CONTENT_LENGTH, renderBuffer.size());
+                renderBuffer.writeTo(out);
+            }
+        } finally {
+            if (renderBuffer != null && !released) {
+                renderBuffer.release();
+            }
+            if (pageKey != null) {
+                completeFlight();       // in case rendering failed
             }
+        }
+    }
+
+    /**
+     * Ends the claim of this request to render a cached view, if any, so that
+     * concurrent requests waiting for it can proceed.
+     */
+    private void completeFlight() {
+        final PageCache.Flight flight = (PageCache.Flight) request.getAttribute(PageCache.FLIGHT);
+        if (flight != null) {
+            request.removeAttribute(PageCache.FLIGHT);
+            pageCache.complete(flight);
+        }
+    }
 
-            @Override
-            public PrintWriter getWriter() throws IOException {
-                return responseWriter;
+    /**
+     * Writes a view from the output cache, e.g. one rendered by a concurrent request after
+     * this request was checked in {@link ViewRequestFilter}. Its ETag, if any, is only used
+     * if ETags are enabled, in which case a 304 response may be returned instead.
+     *
+     * @param page Cached view.
+     * @param headers Response headers.
+     * @param out Entity stream.
+     * @throws IOException if an I/O error occurs.
+     */
+    private void writeCachedPage(CachedPage page, MultivaluedMap<String, Object> headers, OutputStream out)
+            throws IOException {
+        try {
+            if (page.getContentEncoding() != null) {
+                headers.putSingle(HttpHeaders.CONTENT_ENCODING, page.getContentEncoding());
             }
-        };
+            if (page.getETag() != null && isETag(headers)) {
+                headers.putSingle(HttpHeaders.ETAG, page.getETag());
+                if (matchesETag(request.getHeader(HttpHeaders.IF_NONE_MATCH), page.getETag())) {
+                    writeNotModified(headers);
+                    return;
+                }
+            }
+            headers.putSingle(HttpHeaders.CONTENT_LENGTH, page.getLength());
+            page.writeBody(out);
+        } finally {
+            page.release();
+        }
+    }
+
+    /**
+     * Processes a view using an engine and fires the corresponding events. Nothing
+     * is written to the entity stream if {@code out} is a {@link RenderBuffer} or a stream
+     * that writes to one, so that a failure can still be mapped to a different response.
+     *
+     * @param engine View engine.
+     * @param viewable Viewable to process.
+     * @param headers Response headers.
+     * @param out Stream to write the view to.
+     * @param encoding Content coding to compress the view with or {@code null}.
+     * @throws IOException if an I/O error occurs.
+     */
+    private void processView(ViewEngine engine, Viewable viewable, MultivaluedMap<String, Object> headers,
+                             OutputStream out, String encoding) throws IOException {
+        // Wrap response to capture output of view engine
+        final ViewOutput output = acquireViewOutput();
+        final HttpServletResponse responseWrapper = output.open(response, out, getCharset(headers));
+        if (encoding != null) {
+            output.compress(out, headers, encoding,
+                    getProperty(config, Properties.COMPRESSION_MIN_SIZE, DEFAULT_COMPRESSION_MIN_SIZE));
+        }
 
         // Pass request to view engine
+        boolean finished = false;
         try {
             // If no models in viewable, inject via CDI
             Models models = viewable.getModels();
@@ -221,6 +392,11 @@ public class ViewableWriter implements MessageBodyWriter<Viewable> {
             // Bind EL 'mvc' object in models
             models.put("mvc", mvc);
 
+            // Bind EL 'mvcFragments' object in models unless used by the application
+            if (models.get("mvcFragments") == null) {
+                models.put("mvcFragments", fragmentCache);
+            }
+
             // Fire BeforeProcessView event
             if (isEventObserved(BeforeProcessViewEvent.class)) {
                 final BeforeProcessViewEventImpl event = new BeforeProcessViewEventImpl();
@@ -229,22 +405,243 @@ public class ViewableWriter implements MessageBodyWriter<Viewable> {
                 dispatcher.fire(event);
             }
 
-            // Process view using selected engine
+            // Process view using selected engine, timed only if observed
+            final boolean observed = isEventObserved(AfterProcessViewEvent.class);
+            final long start = observed ? System.nanoTime() : 0L;
             engine.processView(new ViewEngineContextImpl(viewable.getView(), models, request, responseWrapper,
                     uriInfo, resourceInfo, config));
 
-            // Fire AfterProcessView event
-            if (isEventObserved(AfterProcessViewEvent.class)) {
+            // Fire AfterProcessView event once all output is counted
+            if (observed) {
+                final long duration = System.nanoTime() - start;
+                output.finish();
+                finished = true;
                 final AfterProcessViewEventImpl event = new AfterProcessViewEventImpl();
                 event.setEngine(engine.getClass());
                 event.setView(viewable.getView());
+                event.setControllerMethod(resourceInfo.getResourceMethod());
+                event.setDuration(duration);
+                event.setBytesWritten(output.getBytesWritten());
+                event.setCharsWritten(output.getCharsWritten());
                 dispatcher.fire(event);
             }
         } catch (ViewEngineException e) {
             throw new ServerErrorException(INTERNAL_SERVER_ERROR, e);
         } finally {
-            responseWriter.flush();
+            try {
+                if (!finished) {
+                    output.finish();
+                }
+            } finally {
+                output.release();
+                releaseViewOutput(output);
+            }
+        }
+    }
+
+    /**
+     * Determines if the view should be rendered into memory and written using a
+     * {@link javax.servlet.WriteListener}. An {@link org.glassfish.ozark.annotation.AsyncWrite}
+     * annotation on the controller method or class takes precedence over
+     * {@link org.glassfish.ozark.Properties#ASYNC_WRITE}, which also applies to views
+     * not produced by a resource method, such as those of exception mappers for
+     * unmatched requests. Responses whose content is
+     * encoded by a writer interceptor are always written to the entity stream.
+     *
+     * @param headers Response headers.
+     * @return outcome of test.
+     */
+    private boolean isAsyncWrite(MultivaluedMap<String, Object> headers) {
+        final Boolean an = ControllerDescriptor.of(resourceInfo.getResourceClass(), resourceInfo.getResourceMethod())
+                .getAsyncWrite();
+        final boolean enabled = an != null ? an : getProperty(config, Properties.ASYNC_WRITE, false);
+        return enabled && !headers.containsKey(HttpHeaders.CONTENT_ENCODING) && request.isAsyncSupported();
+    }
+
+    /**
+     * Returns the content coding to compress a view with, if any. Compression must be
+     * enabled via {@link org.glassfish.ozark.Properties#COMPRESSION} and the media type
+     * must be listed in {@link org.glassfish.ozark.Properties#COMPRESSION_MEDIA_TYPES}.
+     * In that case, a Vary header is added even if the view ends up not being compressed.
+     *
+     * @param headers Response headers.
+     * @param mediaType Media type of the view.
+     * @return content coding or {@code null} if the view must not be compressed.
+     */
+    private String getCompressionEncoding(MultivaluedMap<String, Object> headers, MediaType mediaType) {
+        if (!getProperty(config, Properties.COMPRESSION, false)) {
+            return null;
+        }
+        final String value = getProperty(config, Properties.COMPRESSION_MEDIA_TYPES, DEFAULT_COMPRESSION_MEDIA_TYPES);
+        final List<MediaType> mediaTypes = COMPRESSION_MEDIA_TYPES.computeIfAbsent(value,
+                v -> Arrays.stream(v.split(",")).map(String::trim).filter(s -> !s.isEmpty())
+                        .map(MediaType::valueOf).collect(Collectors.toList()));
+        if (mediaType == null || mediaTypes.stream().noneMatch(mt -> mt.isCompatible(mediaType))) {
+            return null;
+        }
+        addVary(headers, HttpHeaders.ACCEPT_ENCODING);
+        if (headers.containsKey(HttpHeaders.CONTENT_ENCODING)) {
+            return null;
+        }
+        return VariantSelector.selectEncoding(request, CompressingOutputStream.GZIP, CompressingOutputStream.DEFLATE);
+    }
+
+    /**
+     * Adds a value to the Vary header unless it is already present.
+     *
+     * @param headers Response headers.
+     * @param value Header name to add.
+     */
+    static void addVary(MultivaluedMap<String, Object> headers, String value) {
+        final List<Object> vary = headers.get(HttpHeaders.VARY);
+        if (vary != null) {
+            for (Object v : vary) {
+                for (String s : v.toString().split(",")) {
+                    if (s.trim().equalsIgnoreCase(value) || s.trim().equals("*")) {
+                        return;
+                    }
+                }
+            }
+        }
+        headers.add(HttpHeaders.VARY, value);
+    }
+
+    /**
+     * Determines if an ETag should be computed for the view, see
+     * {@link org.glassfish.ozark.Properties#ETAG}. Only views of successful GET and HEAD
+     * responses are tagged. An ETag set by the controller is left untouched.
+     *
+     * @param headers Response headers.
+     * @return outcome of test.
+     */
+    private boolean isETag(MultivaluedMap<String, Object> headers) {
+        if (!getProperty(config, Properties.ETAG, false) || headers.containsKey(HttpHeaders.ETAG)
+                || request.getAttribute(SUCCESSFUL) == null) {
+            return false;
+        }
+        final String method = request.getMethod();
+        return "GET".equals(method) || "HEAD".equals(method);
+    }
+
+    /**
+     * Checks an If-None-Match header against an ETag using weak comparison, as
+     * required by RFC 7232.
+     *
+     * @param ifNoneMatch Value of If-None-Match header or {@code null}.
+     * @param tag ETag of the view.
+     * @return outcome of test.
+     */
+    static boolean matchesETag(String ifNoneMatch, String tag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String s : ifNoneMatch.split(",")) {
+            s = s.trim();
+            if (s.startsWith("W/")) {
+                s = s.substring(2);
+            }
+            if (s.equals("*") || s.equals(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Commits a 304 response with no body directly on the servlet response, copying
+     * the headers that RFC 7232 requires in such a response. Status and headers set by
+     * Jersey afterwards are ignored by the container. Throwing an exception instead would
+     * run response filters again and turn the response back into a view.
+     *
+     * @param headers Response headers.
+     * @throws IOException if an I/O error occurs.
+     */
+    private void writeNotModified(MultivaluedMap<String, Object> headers) throws IOException {
+        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        for (String name : NOT_MODIFIED_HEADERS) {
+            final List<Object> values = headers.get(name);
+            if (values != null) {
+                for (Object value : values) {
+                    response.addHeader(name, value.toString());
+                }
+            }
         }
+        response.flushBuffer();
+    }
+
+    /**
+     * Commits status and headers through the entity stream, with a Content-Length
+     * computed from the rendered view, and then registers a {@link AsyncResponseWriter}
+     * that writes the view as the client is able to receive it. The entity stream
+     * provided by Jersey's servlet container does not close the servlet output stream.
+     * If the writer cannot be registered, the asynchronous context is completed and
+     * the buffer released.
+     *
+     * @param renderBuffer Buffer with rendered view.
+     * @param headers Response headers.
+     * @param out Entity stream.
+     * @throws IOException if an I/O error occurs.
+     */
+    private void writeAsync(RenderBuffer renderBuffer, MultivaluedMap<String, Object> headers, OutputStream out)
+            throws IOException {
+        // An explicit header takes precedence over the length computed on commit
+        headers.putSingle(HttpHeaders.CONTENT_LENGTH, renderBuffer.size());
+        out.close();
+        response.flushBuffer();
+
+        final AsyncContext asyncContext = request.startAsync();
+        AsyncResponseWriter writer = null;
+        try {
+            final ServletOutputStream servletStream = response.getOutputStream();
+            writer = new AsyncResponseWriter(asyncContext, servletStream, renderBuffer);
+            servletStream.setWriteListener(writer);
+        } catch (IOException | RuntimeException e) {
+            if (writer != null) {
+                writer.onError(e);
+            } else {
+                renderBuffer.release();
+                asyncContext.complete();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Takes a {@link ViewOutput} from the pool or creates one if the pool is empty.
+     * Pooled instances are free, so a nested render never gets the instance of an
+     * enclosing render.
+     *
+     * @return view output to capture the output of a view engine.
+     */
+    private ViewOutput acquireViewOutput() {
+        final int bufferSize = getBufferSize();
+        final ViewOutput output = viewOutputs.poll();
+        if (output == null || output.getBufferSize() != bufferSize) {
+            return new ViewOutput(response, bufferSize);
+        }
+        return output;
+    }
+
+    /**
+     * Returns a released {@link ViewOutput} to the pool. Instances returned to a full
+     * pool are left to the garbage collector. As the pool is owned by this writer and
+     * not by container threads, nothing outlives the application.
+     *
+     * @param output view output previously obtained from {@link #acquireViewOutput()}.
+     */
+    private void releaseViewOutput(ViewOutput output) {
+        if (!output.isInUse()) {
+            viewOutputs.offer(output);
+        }
+    }
+
+    /**
+     * Returns the size of the buffer used to forward view output to the entity stream.
+     *
+     * @return buffer size in bytes.
+     */
+    private int getBufferSize() {
+        return getProperty(config, Properties.VIEW_BUFFER_SIZE, DEFAULT_BUFFER_SIZE);
     }
 
     /**
@@ -257,6 +654,6 @@ public class ViewableWriter implements MessageBodyWriter<Viewable> {
     private Charset getCharset(MultivaluedMap<String, Object> headers) {
         final MediaType mt = (MediaType) headers.get(CONTENT_TYPE).get(0);
         final String charset = mt.getParameters().get(MediaType.CHARSET_PARAMETER);
-        return charset != null ? Charset.forName(charset) : UTF8;
+        return charset != null ? CHARSETS.computeIfAbsent(charset, Charset::forName) : UTF8;
     }
 }
@@ -39,6 +39,8 @@
  */
 package org.glassfish.ozark.engine;
 
+import org.glassfish.ozark.annotation.ViewSuffix;
+
 import javax.annotation.Priority;
 import javax.mvc.engine.Priorities;
 import javax.mvc.engine.ViewEngineContext;
@@ -55,6 +57,7 @@ import java.io.IOException;
  * @see org.glassfish.ozark.engine.ViewEngineBase#resolveView(javax.mvc.engine.ViewEngineContext)
  */
 @Priority(Priorities.DEFAULT)
+@ViewSuffix(".xhtml")
 public class FaceletsViewEngine extends ServletViewEngine {
 
     /**
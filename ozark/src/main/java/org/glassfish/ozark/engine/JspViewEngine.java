@@ -39,6 +39,8 @@
  */
 package org.glassfish.ozark.engine;
 
+import org.glassfish.ozark.annotation.ViewSuffix;
+
 import javax.annotation.Priority;
 import javax.mvc.engine.Priorities;
 import javax.mvc.engine.ViewEngineContext;
@@ -54,6 +56,7 @@ import java.io.IOException;
  * @see org.glassfish.ozark.engine.ViewEngineBase#resolveView(javax.mvc.engine.ViewEngineContext)
  */
 @Priority(Priorities.DEFAULT)
+@ViewSuffix({".jsp", ".jspx"})
 public class JspViewEngine extends ServletViewEngine {
 
     /**
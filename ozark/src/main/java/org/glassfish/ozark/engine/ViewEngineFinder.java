@@ -1,35 +1,42 @@
 package org.glassfish.ozark.engine;
 
+import org.glassfish.ozark.Properties;
 import org.glassfish.ozark.util.CdiUtils;
 
-import javax.annotation.Priority;
+import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import javax.mvc.Viewable;
-import javax.mvc.engine.Priorities;
 import javax.mvc.engine.ViewEngine;
-import java.util.HashMap;
-import java.util.List;
+import javax.ws.rs.core.Configuration;
+import javax.ws.rs.core.Context;
+import java.util.Iterator;
 import java.util.Map;
-import java.util.Optional;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
-import static java.util.stream.Collectors.toSet;
-import static org.glassfish.ozark.util.AnnotationUtils.getAnnotation;
+import static org.glassfish.ozark.util.PropertyUtils.getProperty;
 
 /**
  * <p>Selects the view engine for a {@link javax.mvc.Viewable}. If the viewable
  * includes a reference to an engine, the selection process stops and returns
- * it. Otherwise, the method {@link javax.mvc.engine.ViewEngine#supports(String)}
- * is called for each of the view engines injectable via CDI (i.e., all classes
- * that implement {@link javax.mvc.engine.ViewEngine}).</p>
+ * it, using a supplier obtained from {@link CdiUtils#newBeanSupplier(Class)} once per
+ * engine class. Otherwise, the view engines injectable via CDI (i.e., all classes
+ * that implement {@link javax.mvc.engine.ViewEngine}) are looked up by view suffix
+ * in a {@link ViewEngineIndex}, and the method
+ * {@link javax.mvc.engine.ViewEngine#supports(String)} is only called for engines
+ * that do not declare their suffixes.</p>
  *
- * <p>The resulting set of candidates is sorted based on its priority as
- * defined by the annotation {@link javax.annotation.Priority} on the view engine
- * implementation.</p>
+ * <p>The engine with the highest priority, as defined by the annotation
+ * {@link javax.annotation.Priority} on the view engine implementation, is
+ * selected.</p>
  *
- * <p>This class implements a simple cache to avoid repeated look-ups for the same
- * view.</p>
+ * <p>This class implements a cache to avoid repeated look-ups for the same view,
+ * including views that no engine supports. The cache is bounded by
+ * {@link org.glassfish.ozark.Properties#VIEW_ENGINE_CACHE_SIZE}; when full, an entry
+ * not used since the last eviction is removed. Reads do not lock.</p>
  *
  * @author Santiago Pericas-Geertsen
  * @author Eddú Meléndez
@@ -37,10 +44,35 @@ import static org.glassfish.ozark.util.AnnotationUtils.getAnnotation;
 @ApplicationScoped
 public class ViewEngineFinder {
 
+    public static final int DEFAULT_CACHE_SIZE = 1000;
+
     @Inject
     private CdiUtils cdiUtils;
 
-    private Map<String, ViewEngine> cache = new HashMap<>();
+    @Context
+    private Configuration config;
+
+    private final ConcurrentMap<String, CacheEntry> cache = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Class<? extends ViewEngine>, Supplier<? extends ViewEngine>> engines =
+            new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private int maxEntries = DEFAULT_CACHE_SIZE;
+
+    private volatile ViewEngineIndex index;
+
+    @PostConstruct
+    public void init() {
+        if (config != null) {
+            maxEntries = getProperty(config, Properties.VIEW_ENGINE_CACHE_SIZE, DEFAULT_CACHE_SIZE);
+        }
+    }
 
     /**
      * Finds view engine for a viewable.
@@ -49,39 +81,105 @@ public class ViewEngineFinder {
      * @return selected view engine or {@code null} if none found.
      */
     public ViewEngine find(Viewable viewable) {
-        Optional<ViewEngine> engine;
-        final String view = viewable.getView();
-
         // If engine specified in viewable, use it
         final Class<? extends ViewEngine> engineClass = viewable.getViewEngine();
         if (engineClass != null) {
-            engine = Optional.of(cdiUtils.newBean(engineClass));
-        } else {
-            // Check cache first
-            engine = Optional.ofNullable(cache.get(view));
-
-            if (!engine.isPresent()) {
-                List<ViewEngine> engines = CdiUtils.getApplicationBeans(ViewEngine.class);
-
-                // Gather set of candidates
-                final Set<ViewEngine> candidates = engines.stream()
-                        .filter(e -> e.supports(view)).collect(toSet());
-
-                // Find candidate with highest priority
-                engine = candidates.stream().max(
-                        (e1, e2) -> {
-                            final Priority p1 = getAnnotation(e1.getClass(), Priority.class);
-                            final int v1 = p1 != null ? p1.value() : Priorities.DEFAULT;
-                            final Priority p2 = getAnnotation(e2.getClass(), Priority.class);
-                            final int v2 = p2 != null ? p2.value() : Priorities.DEFAULT;
-                            return v1 - v2;
-                        });
-                // Update cache
-                if (engine.isPresent()) {
-                    cache.put(view, engine.get());
+            return engines.computeIfAbsent(engineClass, cdiUtils::newBeanSupplier).get();
+        }
+
+        // Check cache first
+        final String view = viewable.getView();
+        final CacheEntry entry = cache.get(view);
+        if (entry != null) {
+            hits.increment();
+            entry.referenced = true;
+            return entry.engine;
+        }
+        misses.increment();
+
+        // Update cache, also if no engine found
+        final ViewEngine engine = select(view);
+        if (cache.size() >= maxEntries) {
+            evict();
+        }
+        cache.put(view, new CacheEntry(engine));
+        return engine;
+    }
+
+    /**
+     * Returns the number of look-ups answered by the cache.
+     *
+     * @return number of cache hits.
+     */
+    public long getCacheHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of look-ups that required selecting an engine.
+     *
+     * @return number of cache misses.
+     */
+    public long getCacheMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of views removed from the cache to make room for others.
+     *
+     * @return number of cache evictions.
+     */
+    public long getCacheEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Selects the engine with the highest priority among those that support a view.
+     * The index of engines is built on first use, as the set of engines does not
+     * change after deployment.
+     *
+     * @param view the view.
+     * @return selected view engine or {@code null} if none found.
+     */
+    ViewEngine select(String view) {
+        ViewEngineIndex index = this.index;
+        if (index == null) {
+            index = new ViewEngineIndex(CdiUtils.getApplicationBeans(ViewEngine.class));
+            this.index = index;
+        }
+        return index.select(view);
+    }
+
+    /**
+     * Removes the first entry not used since it was last passed over, giving each
+     * used entry a second chance.
+     */
+    private void evict() {
+        for (int pass = 0; pass < 2; pass++) {
+            final Iterator<Map.Entry<String, CacheEntry>> it = cache.entrySet().iterator();
+            while (it.hasNext()) {
+                final Map.Entry<String, CacheEntry> e = it.next();
+                if (e.getValue().referenced) {
+                    e.getValue().referenced = false;
+                } else if (cache.remove(e.getKey(), e.getValue())) {
+                    evictions.increment();
+                    return;
                 }
             }
         }
-        return engine.isPresent() ? engine.get() : null;
+    }
+
+    /**
+     * Engine selected for a view, or {@code null} if none supports it.
+     */
+    private static class CacheEntry {
+
+        private final ViewEngine engine;
+
+        private volatile boolean referenced;
+
+        CacheEntry(ViewEngine engine) {
+            this.engine = engine;
+        }
     }
 }
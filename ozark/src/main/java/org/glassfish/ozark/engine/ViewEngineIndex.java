@@ -0,0 +1,141 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.engine;
+
+import org.glassfish.ozark.annotation.ViewSuffix;
+
+import javax.annotation.Priority;
+import javax.mvc.engine.Priorities;
+import javax.mvc.engine.ViewEngine;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.glassfish.ozark.util.AnnotationUtils.getAnnotation;
+
+/**
+ * <p>Index of view engines by the suffixes declared using
+ * {@link org.glassfish.ozark.annotation.ViewSuffix}, each ordered by priority. Engines
+ * without declared suffixes are kept in a separate list, also ordered by priority,
+ * and only asked about a view if they have a higher priority than the best engine
+ * found by suffix.</p>
+ *
+ * <p>Instances are immutable and built once per application by {@link ViewEngineFinder}.</p>
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+class ViewEngineIndex {
+
+    private static final Comparator<Ranked> BY_PRIORITY = (r1, r2) -> Integer.compare(r2.priority, r1.priority);
+
+    private final Map<String, Ranked> bySuffix = new HashMap<>();
+
+    private final Ranked[] generic;
+
+    /**
+     * Constructor for view engine indexes.
+     *
+     * @param engines all view engines.
+     */
+    ViewEngineIndex(List<ViewEngine> engines) {
+        final List<Ranked> others = new ArrayList<>();
+        for (ViewEngine engine : engines) {
+            final Priority p = getAnnotation(engine.getClass(), Priority.class);
+            final Ranked ranked = new Ranked(engine, p != null ? p.value() : Priorities.DEFAULT);
+            final ViewSuffix suffix = getAnnotation(engine.getClass(), ViewSuffix.class);
+            if (suffix == null) {
+                others.add(ranked);
+            } else {
+                // Only the engine with the highest priority for a suffix can be selected
+                for (String s : suffix.value()) {
+                    bySuffix.merge(s, ranked, (r1, r2) -> BY_PRIORITY.compare(r1, r2) <= 0 ? r1 : r2);
+                }
+            }
+        }
+        others.sort(BY_PRIORITY);
+        generic = others.toArray(new Ranked[others.size()]);
+    }
+
+    /**
+     * Selects the engine with the highest priority that supports a view.
+     *
+     * @param view the view.
+     * @return selected view engine or {@code null} if none found.
+     */
+    ViewEngine select(String view) {
+        Ranked best = null;
+
+        // Try every suffix of the last path segment that starts with a dot
+        for (int i = view.indexOf('.', view.lastIndexOf('/') + 1); i >= 0; i = view.indexOf('.', i + 1)) {
+            final Ranked ranked = bySuffix.get(view.substring(i));
+            if (ranked != null && (best == null || ranked.priority > best.priority)) {
+                best = ranked;
+            }
+        }
+
+        for (Ranked ranked : generic) {
+            if (best != null && ranked.priority <= best.priority) {
+                break;
+            }
+            if (ranked.engine.supports(view)) {
+                best = ranked;
+                break;
+            }
+        }
+        return best != null ? best.engine : null;
+    }
+
+    /**
+     * A view engine and its priority.
+     */
+    private static class Ranked {
+
+        private final ViewEngine engine;
+
+        private final int priority;
+
+        Ranked(ViewEngine engine, int priority) {
+            this.engine = engine;
+            this.priority = priority;
+        }
+    }
+}
@@ -42,9 +42,12 @@ package org.glassfish.ozark.event;
 import javax.enterprise.context.Dependent;
 import javax.mvc.engine.ViewEngine;
 import javax.mvc.event.AfterProcessViewEvent;
+import java.lang.reflect.Method;
 
 /**
- * An implementation of {@link javax.mvc.event.AfterProcessViewEvent}.
+ * An implementation of {@link javax.mvc.event.AfterProcessViewEvent}. Also provides
+ * the controller method, the time taken by the view engine and the size of the view
+ * it produced.
  *
  * @author Santiago Pericas-Geertsen
  */
@@ -55,6 +58,14 @@ public class AfterProcessViewEventImpl extends MvcEventImpl implements AfterProc
 
     private Class<? extends ViewEngine> engine;
 
+    private Method controllerMethod;
+
+    private long duration;
+
+    private long bytesWritten;
+
+    private long charsWritten;
+
     public String getView() {
         return view;
     }
@@ -70,4 +81,58 @@ public class AfterProcessViewEventImpl extends MvcEventImpl implements AfterProc
     public void setEngine(Class<? extends ViewEngine> engine) {
         this.engine = engine;
     }
+
+    /**
+     * Returns the controller method that returned the view.
+     *
+     * @return controller method.
+     */
+    public Method getControllerMethod() {
+        return controllerMethod;
+    }
+
+    public void setControllerMethod(Method controllerMethod) {
+        this.controllerMethod = controllerMethod;
+    }
+
+    /**
+     * Returns the wall time taken by the view engine to process the view.
+     *
+     * @return duration in nanoseconds.
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    public void setDuration(long duration) {
+        this.duration = duration;
+    }
+
+    /**
+     * Returns the number of bytes written by the view engine, including encoded
+     * characters, before compression.
+     *
+     * @return number of bytes.
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public void setBytesWritten(long bytesWritten) {
+        this.bytesWritten = bytesWritten;
+    }
+
+    /**
+     * Returns the number of characters written by the view engine to the writer
+     * of the response.
+     *
+     * @return number of characters.
+     */
+    public long getCharsWritten() {
+        return charsWritten;
+    }
+
+    public void setCharsWritten(long charsWritten) {
+        this.charsWritten = charsWritten;
+    }
 }
@@ -0,0 +1,319 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.event;
+
+import org.glassfish.jersey.internal.util.collection.ImmutableMultivaluedMap;
+import org.glassfish.jersey.uri.UriComponent;
+import org.glassfish.jersey.uri.UriTemplate;
+
+import javax.mvc.event.AfterControllerEvent;
+import javax.mvc.event.BeforeControllerEvent;
+import javax.mvc.event.ControllerRedirectEvent;
+import javax.mvc.event.MvcEvent;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.PathSegment;
+import javax.ws.rs.core.UriBuilder;
+import javax.ws.rs.core.UriInfo;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>Immutable copies of MVC events that can be delivered to observers after the
+ * request has completed, see {@link MvcEventDispatcher}.</p>
+ *
+ * <p>Controller events are copied together with their {@link UriInfo} and
+ * {@link ResourceInfo}, which are only valid on the request thread. The request
+ * and response contexts are not copied. View events only hold immutable values
+ * and are not copied.</p>
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+public final class EventSnapshots {
+
+    private EventSnapshots() {
+    }
+
+    /**
+     * Returns an immutable copy of an event. Must be called on the request thread.
+     *
+     * @param event the event.
+     * @return copy of the event, or the event itself if already immutable.
+     */
+    public static MvcEvent of(MvcEvent event) {
+        if (event instanceof BeforeControllerEvent) {
+            final BeforeControllerEvent e = (BeforeControllerEvent) event;
+            return new BeforeControllerSnapshot(e.getId(), snapshot(e.getUriInfo()), snapshot(e.getResourceInfo()));
+        }
+        if (event instanceof AfterControllerEvent) {
+            final AfterControllerEvent e = (AfterControllerEvent) event;
+            return new AfterControllerSnapshot(e.getId(), snapshot(e.getUriInfo()), snapshot(e.getResourceInfo()));
+        }
+        if (event instanceof ControllerRedirectEvent) {
+            final ControllerRedirectEvent e = (ControllerRedirectEvent) event;
+            return new ControllerRedirectSnapshot(e.getId(), snapshot(e.getUriInfo()), snapshot(e.getResourceInfo()),
+                    e.getLocation());
+        }
+        return event;
+    }
+
+    private static UriInfo snapshot(UriInfo uriInfo) {
+        return uriInfo != null ? new UriInfoSnapshot(uriInfo) : null;
+    }
+
+    private static ResourceInfo snapshot(ResourceInfo resourceInfo) {
+        return resourceInfo != null ? new ResourceInfoSnapshot(resourceInfo) : null;
+    }
+
+    private static class ControllerSnapshot implements MvcEvent {
+
+        private final String id;
+
+        private final UriInfo uriInfo;
+
+        private final ResourceInfo resourceInfo;
+
+        ControllerSnapshot(String id, UriInfo uriInfo, ResourceInfo resourceInfo) {
+            this.id = id;
+            this.uriInfo = uriInfo;
+            this.resourceInfo = resourceInfo;
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        public UriInfo getUriInfo() {
+            return uriInfo;
+        }
+
+        public ResourceInfo getResourceInfo() {
+            return resourceInfo;
+        }
+    }
+
+    private static final class BeforeControllerSnapshot extends ControllerSnapshot implements BeforeControllerEvent {
+
+        BeforeControllerSnapshot(String id, UriInfo uriInfo, ResourceInfo resourceInfo) {
+            super(id, uriInfo, resourceInfo);
+        }
+    }
+
+    private static final class AfterControllerSnapshot extends ControllerSnapshot implements AfterControllerEvent {
+
+        AfterControllerSnapshot(String id, UriInfo uriInfo, ResourceInfo resourceInfo) {
+            super(id, uriInfo, resourceInfo);
+        }
+    }
+
+    private static final class ControllerRedirectSnapshot extends ControllerSnapshot
+            implements ControllerRedirectEvent {
+
+        private final URI location;
+
+        ControllerRedirectSnapshot(String id, UriInfo uriInfo, ResourceInfo resourceInfo, URI location) {
+            super(id, uriInfo, resourceInfo);
+            this.location = location;
+        }
+
+        @Override
+        public URI getLocation() {
+            return location;
+        }
+    }
+
+    private static final class ResourceInfoSnapshot implements ResourceInfo {
+
+        private final Method resourceMethod;
+
+        private final Class<?> resourceClass;
+
+        ResourceInfoSnapshot(ResourceInfo resourceInfo) {
+            resourceMethod = resourceInfo.getResourceMethod();
+            resourceClass = resourceInfo.getResourceClass();
+        }
+
+        @Override
+        public Method getResourceMethod() {
+            return resourceMethod;
+        }
+
+        @Override
+        public Class<?> getResourceClass() {
+            return resourceClass;
+        }
+    }
+
+    /**
+     * Copy of the URIs and parameters of a request. Values derived from the request
+     * URI, such as query parameters and path segments, are computed when requested.
+     */
+    private static final class UriInfoSnapshot implements UriInfo {
+
+        private final URI requestUri;
+
+        private final URI baseUri;
+
+        private final URI absolutePath;
+
+        private final String encodedPath;
+
+        private final MultivaluedMap<String, String> pathParameters;
+
+        private final MultivaluedMap<String, String> encodedPathParameters;
+
+        private final List<String> matchedURIs;
+
+        private final List<String> encodedMatchedURIs;
+
+        private final List<Object> matchedResources;
+
+        UriInfoSnapshot(UriInfo uriInfo) {
+            requestUri = uriInfo.getRequestUri();
+            baseUri = uriInfo.getBaseUri();
+            absolutePath = uriInfo.getAbsolutePath();
+            encodedPath = uriInfo.getPath(false);
+            pathParameters = new ImmutableMultivaluedMap<>(uriInfo.getPathParameters(true));
+            encodedPathParameters = new ImmutableMultivaluedMap<>(uriInfo.getPathParameters(false));
+            matchedURIs = Collections.unmodifiableList(new ArrayList<>(uriInfo.getMatchedURIs(true)));
+            encodedMatchedURIs = Collections.unmodifiableList(new ArrayList<>(uriInfo.getMatchedURIs(false)));
+            matchedResources = Collections.unmodifiableList(new ArrayList<>(uriInfo.getMatchedResources()));
+        }
+
+        @Override
+        public String getPath() {
+            return getPath(true);
+        }
+
+        @Override
+        public String getPath(boolean decode) {
+            return decode ? UriComponent.decode(encodedPath, UriComponent.Type.PATH) : encodedPath;
+        }
+
+        @Override
+        public List<PathSegment> getPathSegments() {
+            return getPathSegments(true);
+        }
+
+        @Override
+        public List<PathSegment> getPathSegments(boolean decode) {
+            return Collections.unmodifiableList(UriComponent.decodePath(encodedPath, decode));
+        }
+
+        @Override
+        public URI getRequestUri() {
+            return requestUri;
+        }
+
+        @Override
+        public UriBuilder getRequestUriBuilder() {
+            return UriBuilder.fromUri(requestUri);
+        }
+
+        @Override
+        public URI getAbsolutePath() {
+            return absolutePath;
+        }
+
+        @Override
+        public UriBuilder getAbsolutePathBuilder() {
+            return UriBuilder.fromUri(absolutePath);
+        }
+
+        @Override
+        public URI getBaseUri() {
+            return baseUri;
+        }
+
+        @Override
+        public UriBuilder getBaseUriBuilder() {
+            return UriBuilder.fromUri(baseUri);
+        }
+
+        @Override
+        public MultivaluedMap<String, String> getPathParameters() {
+            return getPathParameters(true);
+        }
+
+        @Override
+        public MultivaluedMap<String, String> getPathParameters(boolean decode) {
+            return decode ? pathParameters : encodedPathParameters;
+        }
+
+        @Override
+        public MultivaluedMap<String, String> getQueryParameters() {
+            return getQueryParameters(true);
+        }
+
+        @Override
+        public MultivaluedMap<String, String> getQueryParameters(boolean decode) {
+            return new ImmutableMultivaluedMap<>(UriComponent.decodeQuery(requestUri, decode));
+        }
+
+        @Override
+        public List<String> getMatchedURIs() {
+            return getMatchedURIs(true);
+        }
+
+        @Override
+        public List<String> getMatchedURIs(boolean decode) {
+            return decode ? matchedURIs : encodedMatchedURIs;
+        }
+
+        @Override
+        public List<Object> getMatchedResources() {
+            return matchedResources;
+        }
+
+        @Override
+        public URI resolve(URI uri) {
+            return baseUri.resolve(uri);
+        }
+
+        @Override
+        public URI relativize(URI uri) {
+            return UriTemplate.relativize(requestUri, uri.isAbsolute() ? uri : resolve(uri));
+        }
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.event;
+
+import org.glassfish.ozark.Properties;
+import org.glassfish.ozark.cdi.OzarkCdiExtension;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Event;
+import javax.enterprise.inject.spi.BeanManager;
+import javax.enterprise.inject.spi.ObserverMethod;
+import javax.inject.Inject;
+import javax.mvc.event.MvcEvent;
+import javax.ws.rs.core.Configuration;
+import javax.ws.rs.core.Context;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.glassfish.ozark.util.PropertyUtils.getProperty;
+
+/**
+ * <p>Fires MVC events. Events are fired synchronously through CDI unless
+ * {@link org.glassfish.ozark.Properties#ASYNC_EVENTS} is set.</p>
+ *
+ * <p>In asynchronous mode, observers annotated by
+ * {@link org.glassfish.ozark.annotation.Synchronous} are called on the request thread
+ * with the original event. All other observers get an immutable copy of the event,
+ * see {@link EventSnapshots}, on a fixed number of background threads. Events wait
+ * in a bounded queue; when it is full, events are dropped or the request thread waits,
+ * as set by {@link org.glassfish.ozark.Properties#ASYNC_EVENTS_OVERFLOW}. Background
+ * observers run without an active request context.</p>
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+@ApplicationScoped
+public class MvcEventDispatcher {
+
+    private static final Logger LOG = Logger.getLogger(MvcEventDispatcher.class.getName());
+
+    static final int DEFAULT_THREADS = 1;
+
+    static final int DEFAULT_QUEUE_SIZE = 1000;
+
+    @Inject
+    private Event<MvcEvent> events;
+
+    @Inject
+    private BeanManager beanManager;
+
+    @Context
+    private Configuration config;
+
+    private final ConcurrentMap<Class<?>, Observers> observers = new ConcurrentHashMap<>();
+
+    private final LongAdder queued = new LongAdder();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final LongAdder delivered = new LongAdder();
+
+    private final LongAdder failed = new LongAdder();
+
+    private ThreadPoolExecutor executor;
+
+    private boolean block;
+
+    @PostConstruct
+    public void init() {
+        if (config != null && getProperty(config, Properties.ASYNC_EVENTS, false)) {
+            final int threads = getProperty(config, Properties.ASYNC_EVENTS_THREADS, DEFAULT_THREADS);
+            final int queueSize = getProperty(config, Properties.ASYNC_EVENTS_QUEUE_SIZE, DEFAULT_QUEUE_SIZE);
+            block = "block".equalsIgnoreCase(getProperty(config, Properties.ASYNC_EVENTS_OVERFLOW, "drop"));
+            executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueSize), new DaemonThreadFactory());
+            executor.prestartAllCoreThreads();
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Fires an event. Exceptions thrown by observers called on the request thread are
+     * propagated; exceptions thrown by background observers are logged.
+     *
+     * @param event the event.
+     */
+    public void fire(MvcEvent event) {
+        if (executor == null) {
+            events.fire(event);
+            return;
+        }
+        final Observers o = observers.computeIfAbsent(event.getClass(), c -> resolve(event));
+        for (ObserverMethod<? super MvcEvent> observer : o.inline) {
+            observer.notify(event);
+        }
+        if (o.async.length > 0) {
+            enqueue(EventSnapshots.of(event), o.async);
+        }
+    }
+
+    /**
+     * Splits the observers of an event into those called on the request thread and
+     * those called in the background. Depends only on the class of the event since
+     * events are fired without qualifiers.
+     *
+     * @param event the event.
+     * @return observers of the event.
+     */
+    private Observers resolve(MvcEvent event) {
+        final List<ObserverMethod<? super MvcEvent>> inline = new ArrayList<>();
+        final List<ObserverMethod<? super MvcEvent>> async = new ArrayList<>();
+        for (ObserverMethod<? super MvcEvent> observer : beanManager.resolveObserverMethods(event)) {
+            (OzarkCdiExtension.isSynchronousObserver(observer) ? inline : async).add(observer);
+        }
+        return new Observers(inline, async);
+    }
+
+    private void enqueue(MvcEvent snapshot, ObserverMethod<? super MvcEvent>[] async) {
+        final Runnable task = () -> deliver(snapshot, async);
+        // Core threads are started, so tasks can go straight into the queue
+        if (block) {
+            try {
+                executor.getQueue().put(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                dropped.increment();
+                return;
+            }
+        } else if (!executor.getQueue().offer(task)) {
+            dropped.increment();
+            return;
+        }
+        queued.increment();
+    }
+
+    private void deliver(MvcEvent snapshot, ObserverMethod<? super MvcEvent>[] async) {
+        for (ObserverMethod<? super MvcEvent> observer : async) {
+            try {
+                observer.notify(snapshot);
+            } catch (RuntimeException e) {
+                failed.increment();
+                LOG.log(Level.WARNING, "Observer of " + snapshot.getClass().getName() + " in "
+                        + observer.getBeanClass().getName() + " failed", e);
+            }
+        }
+        delivered.increment();
+    }
+
+    /**
+     * Determines if events are delivered asynchronously.
+     *
+     * @return {@code true} if {@link org.glassfish.ozark.Properties#ASYNC_EVENTS} is set.
+     */
+    public boolean isAsync() {
+        return executor != null;
+    }
+
+    /**
+     * Returns the number of events queued for background observers.
+     *
+     * @return number of queued events.
+     */
+    public long getQueuedEvents() {
+        return queued.sum();
+    }
+
+    /**
+     * Returns the number of events not delivered to background observers because the
+     * queue was full.
+     *
+     * @return number of dropped events.
+     */
+    public long getDroppedEvents() {
+        return dropped.sum();
+    }
+
+    /**
+     * Returns the number of events delivered to all their background observers.
+     *
+     * @return number of delivered events.
+     */
+    public long getDeliveredEvents() {
+        return delivered.sum();
+    }
+
+    /**
+     * Returns the number of calls to background observers that threw an exception.
+     *
+     * @return number of failed deliveries.
+     */
+    public long getFailedDeliveries() {
+        return failed.sum();
+    }
+
+    /**
+     * Returns the number of events waiting in the queue.
+     *
+     * @return number of pending events.
+     */
+    public int getPendingEvents() {
+        return executor != null ? executor.getQueue().size() : 0;
+    }
+
+    /**
+     * Observers of an event class.
+     */
+    @SuppressWarnings("unchecked")
+    private static final class Observers {
+
+        private final ObserverMethod<? super MvcEvent>[] inline;
+
+        private final ObserverMethod<? super MvcEvent>[] async;
+
+        Observers(List<ObserverMethod<? super MvcEvent>> inline, List<ObserverMethod<? super MvcEvent>> async) {
+            this.inline = inline.toArray(new ObserverMethod[inline.size()]);
+            this.async = async.toArray(new ObserverMethod[async.size()]);
+        }
+    }
+
+    /**
+     * Creates daemon threads with the class loader of the application.
+     */
+    private static final class DaemonThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        private final ClassLoader loader = Thread.currentThread().getContextClassLoader();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            final Thread thread = new Thread(r, "ozark-events-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setContextClassLoader(loader);
+            return thread;
+        }
+    }
+}
@@ -41,8 +41,7 @@ package org.glassfish.ozark.event;
 
 import javax.enterprise.context.Dependent;
 import javax.mvc.event.MvcEvent;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * An implementation of {@link javax.mvc.event.MvcEvent}.
@@ -52,14 +51,22 @@ import java.util.Date;
 @Dependent
 public class MvcEventImpl implements MvcEvent {
 
-    private String id;
+    private static final AtomicLong COUNTER = new AtomicLong();
+
+    private final long id;
 
     public MvcEventImpl() {
-        id = new SimpleDateFormat("yyyy.MM.dd.HH.mm.ss").format(new Date());
+        id = COUNTER.incrementAndGet();
     }
 
+    /**
+     * Returns an ID that is unique within this application. IDs are taken from a
+     * counter and only converted to strings when requested.
+     *
+     * @return the event ID.
+     */
     @Override
     public String getId() {
-        return id;
+        return Long.toString(id);
     }
 }
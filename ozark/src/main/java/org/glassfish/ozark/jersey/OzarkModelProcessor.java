@@ -39,10 +39,12 @@
  */
 package org.glassfish.ozark.jersey;
 
+import org.glassfish.jersey.server.model.Invocable;
 import org.glassfish.jersey.server.model.ModelProcessor;
 import org.glassfish.jersey.server.model.Resource;
 import org.glassfish.jersey.server.model.ResourceMethod;
 import org.glassfish.jersey.server.model.ResourceModel;
+import org.glassfish.ozark.core.ControllerDescriptor;
 
 import javax.mvc.annotation.Controller;
 import javax.ws.rs.core.Configuration;
@@ -50,7 +52,8 @@ import javax.ws.rs.core.MediaType;
 
 /**
  * A Jersey model processor to ensure that all controller methods whose {@code @Produces}
- * list are empty are set to "text/html", which is the default for MVC.
+ * list are empty are set to "text/html", which is the default for MVC. It also registers
+ * a {@link org.glassfish.ozark.core.ControllerDescriptor} for every controller method.
  *
  * @author Santiago Pericas-Geertsen
  */
@@ -82,10 +85,15 @@ public class OzarkModelProcessor implements ModelProcessor {
         Resource.Builder rb = Resource.builder(r);
         r.getAllMethods().forEach(
                 (ResourceMethod m) -> {
-                    if ((isController(m) || isControllerClass) && m.getProducedTypes().isEmpty()) {
-                        final ResourceMethod.Builder rmb = rb.updateMethod(m);
-                        rmb.produces(MediaType.TEXT_HTML_TYPE);
-                        rmb.build();
+                    if (isController(m) || isControllerClass) {
+                        final Invocable invocable = m.getInvocable();
+                        ControllerDescriptor.register(invocable.getHandler().getHandlerClass(),
+                                invocable.getHandlingMethod());
+                        if (m.getProducedTypes().isEmpty()) {
+                            final ResourceMethod.Builder rmb = rb.updateMethod(m);
+                            rmb.produces(MediaType.TEXT_HTML_TYPE);
+                            rmb.build();
+                        }
                     }
                 }
         );
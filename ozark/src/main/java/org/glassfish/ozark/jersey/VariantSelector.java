@@ -50,6 +50,8 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Variant;
 import java.text.ParseException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Collectors;
 
 import static org.glassfish.ozark.util.AnnotationUtils.getAnnotation;
@@ -71,6 +73,14 @@ public final class VariantSelector {
     static final List<AcceptableMediaType> GENERAL_ACCEPT_MEDIA_TYPE_LIST =
             Collections.singletonList(GENERAL_ACCEPT_MEDIA_TYPE);
 
+    /**
+     * Maximum number of memoized selections. Real traffic uses few combinations of
+     * request headers, but the number must be bounded as they are client-controlled.
+     */
+    static final int MAX_SELECTIONS = 1024;
+
+    private static final ConcurrentMap<SelectionKey, Selection> SELECTIONS = new ConcurrentHashMap<>();
+
     private VariantSelector() {
     }
 
@@ -211,31 +221,40 @@ public final class VariantSelector {
     /**
      * Select variants for a given dimension.
      *
-     * @param variantHolders   collection of variants.
+     * @param variantHolders   array of variants.
      * @param acceptableValues the list of acceptable dimension values, ordered by the quality
      *                         parameter, with the highest quality dimension value occurring
      *                         first.
      * @param dimensionChecker the dimension checker
-     * @param vary             output list of generated vary headers.
+     * @param vary             output set of generated vary headers.
+     * @return selected variants, best first.
      */
-    private static <T extends Qualified, U> LinkedList<VariantHolder> selectVariants(
-            List<VariantHolder> variantHolders,
+    private static <T extends Qualified, U> VariantHolder[] selectVariants(
+            VariantHolder[] variantHolders,
             List<T> acceptableValues,
             DimensionChecker<T, U> dimensionChecker,
             Set<String> vary) {
         int cq = Quality.MINIMUM;
         int cqs = Quality.MINIMUM;
 
-        final LinkedList<VariantHolder> selected = new LinkedList<VariantHolder>();
+        // Selected variants are kept in selected[head, tail) so that they can be
+        // added at either end; each variant is added at most once
+        final int n = variantHolders.length;
+        final VariantHolder[] selected = new VariantHolder[2 * n];
+        final boolean[] removed = new boolean[n];
+        int head = n;
+        int tail = n;
 
         // Iterate over the acceptable entries
         // This assumes the entries are ordered by the quality
         for (final T a : acceptableValues) {
             final int q = a.getQuality();
 
-            final Iterator<VariantHolder> iv = variantHolders.iterator();
-            while (iv.hasNext()) {
-                final VariantHolder v = iv.next();
+            for (int i = 0; i < n; i++) {
+                if (removed[i]) {
+                    continue;
+                }
+                final VariantHolder v = variantHolders[i];
 
                 // Get the dimension  value of the variant to check
                 final U d = dimensionChecker.getDimension(v);
@@ -250,18 +269,18 @@ public final class VariantSelector {
                             cqs = qs;
                             cq = q;
                             // Remove all entries that were added for qs < cqs
-                            selected.clear();
-                            selected.add(v);
+                            head = tail = n;
+                            selected[tail++] = v;
                         } else if (q > cq) {
                             cq = q;
                             // Add variant with higher accept quality at the front
-                            selected.addFirst(v);
+                            selected[--head] = v;
                         } else if (q == cq) {
                             // Ensure selection is stable with order of variants
                             // with same quality of source and accept quality
-                            selected.add(v);
+                            selected[tail++] = v;
                         }
-                        iv.remove();
+                        removed[i] = true;
                     }
                 }
             }
@@ -271,10 +290,10 @@ public final class VariantSelector {
         // to the end
         for (VariantHolder v : variantHolders) {
             if (dimensionChecker.getDimension(v) == null) {
-                selected.add(v);
+                selected[tail++] = v;
             }
         }
-        return selected;
+        return Arrays.copyOfRange(selected, head, tail);
     }
 
     private static class VariantHolder {
@@ -292,26 +311,88 @@ public final class VariantSelector {
         }
     }
 
-    private static LinkedList<VariantHolder> getVariantHolderList(final List<Variant> variants) {
-        final LinkedList<VariantHolder> l = new LinkedList<VariantHolder>();
-        for (Variant v : variants) {
+    private static VariantHolder[] getVariantHolders(final List<Variant> variants) {
+        final VariantHolder[] vhs = new VariantHolder[variants.size()];
+        for (int i = 0; i < vhs.length; i++) {
+            final Variant v = variants.get(i);
             final MediaType mt = v.getMediaType();
-            if (mt != null) {
-                if (mt instanceof QualitySourceMediaType || mt.getParameters().
-                        containsKey(Quality.QUALITY_SOURCE_PARAMETER_NAME)) {
-                    int qs = QualitySourceMediaType.getQualitySource(mt);
-                    l.add(new VariantHolder(v, qs));
-                } else {
-                    l.add(new VariantHolder(v));
-                }
+            if (mt != null && (mt instanceof QualitySourceMediaType
+                    || mt.getParameters().containsKey(Quality.QUALITY_SOURCE_PARAMETER_NAME))) {
+                vhs[i] = new VariantHolder(v, QualitySourceMediaType.getQualitySource(mt));
             } else {
-                l.add(new VariantHolder(v));
+                vhs[i] = new VariantHolder(v);
             }
         }
+        return vhs;
+    }
+
+    /**
+     * Result of selecting a variant: the media type and the request headers it
+     * depends on.
+     */
+    public static final class Selection {
+
+        private final MediaType mediaType;
+
+        private final Set<String> vary;
+
+        private Selection(MediaType mediaType, Set<String> vary) {
+            this.mediaType = mediaType;
+            this.vary = Collections.unmodifiableSet(vary);
+        }
+
+        /**
+         * Returns the selected media type.
+         *
+         * @return selected media type or {@code null} if no matches.
+         */
+        public MediaType getMediaType() {
+            return mediaType;
+        }
 
-        return l;
+        /**
+         * Returns the names of the request headers that were used for the selection,
+         * as needed for the Vary header of the response.
+         *
+         * @return read-only set of header names.
+         */
+        public Set<String> getVary() {
+            return vary;
+        }
     }
 
+    /**
+     * Key of a memoized selection: the list of variants, compared by identity, and
+     * the values of the request headers used for the selection.
+     */
+    private static final class SelectionKey {
+
+        private final List<Variant> variants;
+
+        private final String[] headers;
+
+        private final int hash;
+
+        SelectionKey(List<Variant> variants, String[] headers) {
+            this.variants = variants;
+            this.headers = headers;
+            this.hash = 31 * System.identityHashCode(variants) + Arrays.hashCode(headers);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof SelectionKey)) {
+                return false;
+            }
+            final SelectionKey k = (SelectionKey) o;
+            return variants == k.variants && Arrays.equals(headers, k.headers);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
 
     /**
      * Get a list of media types that are acceptable for a request.
@@ -395,20 +476,88 @@ public final class VariantSelector {
 
     /**
      * Select a single media type based on the headers in the request and a list of
-     * possible variants.
+     * possible variants. Selections are memoized by list of variants, compared by
+     * identity, and request header values, so the list should not be created anew for
+     * each request.
      *
      * @param request  servlet request.
      * @param variants list of possible variants.
      * @return selected media type or {@code null} if no matches.
      */
-    private static MediaType selectVariant(HttpServletRequest request, List<Variant> variants) {
-        LinkedList<VariantHolder> vhs = getVariantHolderList(variants);
-        Set<String> vary = new HashSet<String>();
+    public static MediaType selectVariant(HttpServletRequest request, List<Variant> variants) {
+        return select(request, variants).getMediaType();
+    }
+
+    /**
+     * Select a single media type based on the headers in the request and a list of
+     * possible variants, as well as the headers the selection depends on. Selections are
+     * memoized as in {@link #selectVariant(HttpServletRequest, List)}.
+     *
+     * @param request  servlet request.
+     * @param variants list of possible variants.
+     * @return selection.
+     */
+    public static Selection select(HttpServletRequest request, List<Variant> variants) {
+        final SelectionKey key = new SelectionKey(variants, new String[] {
+                request.getHeader(HttpHeaders.ACCEPT),
+                request.getHeader(HttpHeaders.ACCEPT_LANGUAGE),
+                request.getHeader(HttpHeaders.ACCEPT_CHARSET),
+                request.getHeader(HttpHeaders.ACCEPT_ENCODING)
+        });
+        Selection selection = SELECTIONS.get(key);
+        if (selection == null) {
+            selection = doSelect(request, variants);
+            if (SELECTIONS.size() >= MAX_SELECTIONS) {
+                final Iterator<SelectionKey> it = SELECTIONS.keySet().iterator();
+                if (it.hasNext()) {
+                    SELECTIONS.remove(it.next());
+                }
+            }
+            SELECTIONS.put(key, selection);
+        }
+        return selection;
+    }
+
+    private static Selection doSelect(HttpServletRequest request, List<Variant> variants) {
+        VariantHolder[] vhs = getVariantHolders(variants);
+        final Set<String> vary = new LinkedHashSet<>();
         vhs = selectVariants(vhs, getQualifiedAcceptableMediaTypes(request), MEDIA_TYPE_DC, vary);
         vhs = selectVariants(vhs, getQualifiedAcceptableLanguages(request), LANGUAGE_TAG_DC, vary);
         vhs = selectVariants(vhs, getQualifiedAcceptCharset(request), CHARSET_DC, vary);
         vhs = selectVariants(vhs, getQualifiedAcceptEncoding(request), ENCODING_DC, vary);
-        return vhs.isEmpty() ? null : vhs.get(0).v.getMediaType();
+        return new Selection(vhs.length == 0 ? null : vhs[0].v.getMediaType(), vary);
+    }
+
+    /**
+     * Select a content coding for the response from a list of supported codings, using
+     * the "Accept-Encoding" header of the request. Codings that are explicitly refused
+     * with a quality of zero are never selected.
+     *
+     * @param request   servlet request.
+     * @param encodings supported content codings, in order of preference.
+     * @return selected coding or {@code null} if none is acceptable or the request
+     * has no "Accept-Encoding" header.
+     */
+    public static String selectEncoding(HttpServletRequest request, String... encodings) {
+        final String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding == null || acceptEncoding.length() == 0) {
+            return null;
+        }
+        final List<AcceptableToken> accepted = new ArrayList<>();
+        final Set<String> refused = new HashSet<>();
+        for (AcceptableToken t : getQualifiedAcceptEncoding(request)) {
+            if (t.getQuality() > Quality.MINIMUM) {
+                accepted.add(t);
+            } else {
+                refused.add(t.getToken());
+            }
+        }
+        final VariantHolder[] vhs = Arrays.stream(encodings)
+                .filter(encoding -> !refused.contains(encoding))
+                .map(encoding -> new VariantHolder(new Variant(null, (String) null, encoding)))
+                .toArray(VariantHolder[]::new);
+        final VariantHolder[] selected = selectVariants(vhs, accepted, ENCODING_DC, new HashSet<>());
+        return selected.length == 0 ? null : selected[0].v.getEncoding();
     }
 
     /**
@@ -429,7 +578,7 @@ public final class VariantSelector {
             final List<Variant> variants = Arrays.stream(mediaTypes).map((String mt) -> {
                 return Variant.mediaTypes(MediaType.valueOf(mt)).build().get(0);
             }).collect(Collectors.toList());
-            return selectVariant(request, variants);
+            return doSelect(request, variants).getMediaType();
         }
         return null;
     }
@@ -46,9 +46,11 @@ import javax.enterprise.inject.spi.BeanManager;
 import javax.enterprise.inject.spi.BeforeBeanDiscovery;
 import javax.enterprise.inject.spi.CDI;
 import javax.inject.Inject;
+import javax.inject.Singleton;
 import java.lang.annotation.Annotation;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -93,6 +95,25 @@ public class CdiUtils {
         return (T) bm.getReference(bean, clazz, ctx);
     }
 
+    /**
+     * Returns a supplier of CDI beans of a given class, resolving the bean only once.
+     * For beans in a normal scope or in the singleton pseudo-scope, the supplier always
+     * returns the same reference; otherwise, it creates a new bean on each call like
+     * {@link #newBean(Class)}.
+     *
+     * @param clazz CDI class.
+     * @param <T>   class parameter.
+     * @return supplier of beans.
+     */
+    public <T> Supplier<T> newBeanSupplier(Class<T> clazz) {
+        final Bean<T> bean = (Bean<T>) beanManager.resolve(beanManager.getBeans(clazz));
+        if (beanManager.isNormalScope(bean.getScope()) || bean.getScope() == Singleton.class) {
+            final T reference = (T) beanManager.getReference(bean, clazz, beanManager.createCreationalContext(bean));
+            return () -> reference;
+        }
+        return () -> (T) beanManager.getReference(bean, clazz, beanManager.createCreationalContext(bean));
+    }
+
     /**
      * @param beforeBean  The BeforeBeanDiscovery.
      * @param bm The BeanManager.
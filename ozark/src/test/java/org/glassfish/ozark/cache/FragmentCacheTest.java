@@ -0,0 +1,176 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.cache;
+
+import org.junit.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The JUnit tests for the FragmentCache class.
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+public class FragmentCacheTest {
+
+    /**
+     * Test put, get and expiration.
+     */
+    @Test
+    public void testPutGet() {
+        FragmentCache cache = new FragmentCache();
+        assertNull(cache.get("nav"));
+        assertEquals("<ul/>", cache.put("nav", new StringBuilder("<ul/>"), 60));
+        assertTrue(cache.contains("nav"));
+        assertEquals("<ul/>", cache.get("nav"));
+        cache.put("footer", "<p/>", 0);
+        assertFalse(cache.contains("footer"));
+        cache.evict("nav");
+        assertNull(cache.get("nav"));
+    }
+
+    /**
+     * Test eviction by tag.
+     */
+    @Test
+    public void testEvictTag() {
+        FragmentCache cache = new FragmentCache();
+        cache.put("a", "A", 60, "category:7, menu");
+        cache.put("b", "B", 60, "menu");
+        cache.put("c", "C", 60, "category:8");
+        cache.evictTag("category:7");
+        assertNull(cache.get("a"));
+        assertEquals("B", cache.get("b"));
+        cache.evictTag("menu");
+        assertNull(cache.get("b"));
+        assertEquals("C", cache.get("c"));
+        cache.put("a", "A2", 60, "category:7");
+        assertEquals("A2", cache.get("a"));
+    }
+
+    /**
+     * Test that a section whose tag is evicted while it is rendered is not stored.
+     *
+     * @throws Exception when a serious error occurs.
+     */
+    @Test
+    public void testEvictTagWhileRendering() throws Exception {
+        FragmentCache cache = new FragmentCache();
+        Map<String, Object> attributes = new HashMap<>();
+        HttpServletRequest request = (HttpServletRequest) Proxy.newProxyInstance(
+                HttpServletRequest.class.getClassLoader(), new Class<?>[] { HttpServletRequest.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getAttribute":
+                            return attributes.get(args[0]);
+                        case "setAttribute":
+                            return attributes.put((String) args[0], args[1]);
+                        default:
+                            return null;
+                    }
+                });
+        Field field = FragmentCache.class.getDeclaredField("request");
+        field.setAccessible(true);
+        field.set(cache, request);
+
+        assertFalse(cache.contains("a"));
+        cache.evictTag("t");
+        assertEquals("A", cache.put("a", "A", 60, "t"));
+        assertNull(cache.get("a"));
+        assertEquals("A2", cache.put("a", "A2", 60, "t"));
+        assertEquals("A2", cache.get("a"));
+    }
+
+    /**
+     * Test the number of sections is bounded.
+     *
+     * @throws Exception when a serious error occurs.
+     */
+    @Test
+    public void testMaxEntries() throws Exception {
+        FragmentCache cache = new FragmentCache();
+        Field field = FragmentCache.class.getDeclaredField("maxEntries");
+        field.setAccessible(true);
+        field.set(cache, 2);
+        cache.put("a", "A", 10);
+        cache.put("b", "B", 60, "t");
+        cache.evictTag("t");
+        cache.put("c", "C", 60);
+        assertEquals("A", cache.get("a"));
+        cache.put("d", "D", 60);
+        assertNull(cache.get("a"));
+        assertEquals("C", cache.get("c"));
+        assertEquals("D", cache.get("d"));
+    }
+
+    /**
+     * Test the number of evicted tags is bounded.
+     *
+     * @throws Exception when a serious error occurs.
+     */
+    @Test
+    public void testMaxTags() throws Exception {
+        FragmentCache cache = new FragmentCache();
+        Field field = FragmentCache.class.getDeclaredField("maxEntries");
+        field.setAccessible(true);
+        field.set(cache, 4);
+        cache.put("a", "A", 60, "a");
+        cache.put("b", "B", 60);
+        for (int i = 0; i < 10; i++) {
+            cache.evictTag("t" + i);
+        }
+        field = FragmentCache.class.getDeclaredField("tagEvictions");
+        field.setAccessible(true);
+        assertTrue(((Map<?, ?>) field.get(cache)).size() <= 4);
+        assertNull(cache.get("a"));
+        assertEquals("B", cache.get("b"));
+        cache.put("a", "A", 60, "a");
+        assertEquals("A", cache.get("a"));
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.cache;
+
+import org.junit.Test;
+
+import javax.ws.rs.core.MediaType;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.glassfish.ozark.cache.OffHeapPageStore.BLOCK_SIZE;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * The JUnit tests for the OffHeapPageStore class.
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+public class OffHeapPageStoreTest {
+
+    /**
+     * Test storing views spanning several blocks in direct memory and in a file.
+     *
+     * @throws Exception when a serious error occurs.
+     */
+    @Test
+    public void testGetPut() throws Exception {
+        Path directory = Files.createTempDirectory("ozark");
+        try {
+            testGetPut(new OffHeapPageStore(8 * BLOCK_SIZE));
+            testGetPut(new OffHeapPageStore(8 * BLOCK_SIZE, directory));
+        } finally {
+            Files.delete(directory);
+        }
+    }
+
+    private void testGetPut(PageStore store) throws Exception {
+        byte[] body = body(3 * BLOCK_SIZE + 10);
+        store.put("a", page(body, "\"1\""), 60000);
+        store.put("b", page(new byte[0], null), 60000);
+        CachedPage page = store.get("a");
+        assertEquals(body.length, page.getLength());
+        assertEquals("\"1\"", page.getETag());
+        assertEquals(MediaType.TEXT_HTML_TYPE, page.getMediaType());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        page.writeBody(out);
+        page.release();
+        assertArrayEquals(body, out.toByteArray());
+        assertEquals(0, store.get("b").getLength());
+
+        store.put("a", page(new byte[] { 1 }, "\"2\""), 60000);
+        assertArrayEquals(new byte[] { 1 }, store.get("a").getBody());
+        store.remove("a");
+        assertNull(store.get("a"));
+        assertNull(store.get("c"));
+        store.put("c", page(body(9 * BLOCK_SIZE), null), 60000);
+        assertNull(store.get("c"));
+    }
+
+    /**
+     * Test that views read since the clock hand last passed are not evicted.
+     */
+    @Test
+    public void testClock() {
+        OffHeapPageStore store = new OffHeapPageStore(3 * BLOCK_SIZE);
+        store.put("a", page(body(BLOCK_SIZE), null), 60000);
+        store.put("b", page(body(BLOCK_SIZE), null), 60000);
+        store.put("c", page(body(BLOCK_SIZE), null), 60000);
+        store.get("a").release();
+        store.put("d", page(body(BLOCK_SIZE), null), 60000);
+        assertNotNull(store.get("a"));
+        assertNull(store.get("b"));
+        assertNotNull(store.get("c"));
+        assertNotNull(store.get("d"));
+    }
+
+    /**
+     * Test that the blocks of a view being read are not reused until it is released.
+     */
+    @Test
+    public void testPinned() {
+        OffHeapPageStore store = new OffHeapPageStore(2 * BLOCK_SIZE);
+        byte[] body = body(2 * BLOCK_SIZE);
+        store.put("a", page(body, null), 60000);
+        CachedPage page = store.get("a");
+        store.remove("a");
+        store.put("b", page(body(BLOCK_SIZE), null), 60000);
+        assertNull(store.get("b"));
+        assertArrayEquals(body, page.getBody());
+        page.release();
+        page.release();
+        store.put("b", page(body(BLOCK_SIZE), null), 60000);
+        assertNotNull(store.get("b"));
+    }
+
+    /**
+     * Test that a view held outside the heap is serialized with its body.
+     *
+     * @throws Exception when a serious error occurs.
+     */
+    @Test
+    public void testSerialize() throws Exception {
+        OffHeapPageStore store = new OffHeapPageStore(2 * BLOCK_SIZE);
+        byte[] body = body(BLOCK_SIZE + 10);
+        CachedPage page = page(body, "\"1\"");
+        store.put("a", page, 60000);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            CachedPage stored = store.get("a");
+            out.writeObject(stored);
+            stored.release();
+        }
+        CachedPage copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (CachedPage) in.readObject();
+        }
+        assertArrayEquals(body, copy.getBody());
+        assertEquals(MediaType.TEXT_HTML_TYPE, copy.getMediaType());
+        assertEquals("\"1\"", copy.getETag());
+        assertEquals(page.getExpires(), copy.getExpires());
+    }
+
+    private static CachedPage page(byte[] body, String etag) {
+        return new CachedPage(body, MediaType.TEXT_HTML_TYPE, null, etag, null, System.currentTimeMillis() + 60000);
+    }
+
+    private static byte[] body(int length) {
+        byte[] body = new byte[length];
+        new Random(length).nextBytes(body);
+        return body;
+    }
+}
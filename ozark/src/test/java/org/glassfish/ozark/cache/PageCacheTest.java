@@ -0,0 +1,263 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.cache;
+
+import org.easymock.EasyMock;
+import org.glassfish.ozark.annotation.OutputCache;
+import org.junit.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Variant;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The JUnit tests for the PageCache class.
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+public class PageCacheTest {
+
+    /**
+     * Test keys built from query parameters, headers and locale.
+     *
+     * @throws Exception when a serious error occurs.
+     */
+    @Test
+    public void testCreateKey() throws Exception {
+        PageCache cache = new PageCache();
+        Method method = SomeController.class.getMethod("varying");
+        OutputCache an = method.getAnnotation(OutputCache.class);
+
+        PageKey key1 = cache.createKey(method, an, null, request("/page", "a=1&b=2", "1", "x"), Locale.ENGLISH);
+        PageKey key2 = cache.createKey(method, an, null, request("/page", "a=1&b=3", "1", "x"), Locale.ENGLISH);
+        PageKey key3 = cache.createKey(method, an, null, request("/page", "a=1", "1", "y"), Locale.ENGLISH);
+        PageKey key4 = cache.createKey(method, an, null, request("/page", "a=1", "1", "x"), Locale.GERMAN);
+        assertEquals(key1.getKey(), key2.getKey());
+        assertNotEquals(key1.getKey(), key3.getKey());
+        assertNotEquals(key1.getKey(), key4.getKey());
+    }
+
+    /**
+     * Test that keys include the media type selected for methods producing more than one.
+     *
+     * @throws Exception when a serious error occurs.
+     */
+    @Test
+    public void testCreateKeyVariants() throws Exception {
+        PageCache cache = new PageCache();
+        Method method = SomeController.class.getMethod("small");
+        OutputCache an = method.getAnnotation(OutputCache.class);
+        List<Variant> variants = Variant.mediaTypes(MediaType.TEXT_HTML_TYPE, MediaType.APPLICATION_XML_TYPE).build();
+
+        PageKey key1 = cache.createKey(method, an, variants, accept("text/html"), null);
+        PageKey key2 = cache.createKey(method, an, variants, accept("text/html;q=0.9, application/xml;q=0.5"), null);
+        PageKey key3 = cache.createKey(method, an, variants, accept("application/xml"), null);
+        assertEquals(key1.getKey(), key2.getKey());
+        assertNotEquals(key1.getKey(), key3.getKey());
+        assertEquals(cache.createKey(method, an, null, accept("text/html"), null).getKey(),
+                cache.createKey(method, an, null, accept("application/xml"), null).getKey());
+    }
+
+    /**
+     * Test storing, expiring and encoding-specific entries.
+     *
+     * @throws Exception when a serious error occurs.
+     */
+    @Test
+    public void testGetPut() throws Exception {
+        PageCache cache = new PageCache();
+        Method method = SomeController.class.getMethod("expired");
+        PageKey key = cache.createKey(method, method.getAnnotation(OutputCache.class), null,
+                request("/page", null, null, null), null);
+        cache.put(key, null, new byte[] { 1 }, MediaType.TEXT_HTML_TYPE, new MultivaluedHashMap<>());
+        assertNull(cache.get(key, null));
+
+        method = SomeController.class.getMethod("small");
+        key = cache.createKey(method, method.getAnnotation(OutputCache.class), null,
+                request("/page", null, null, null), null);
+        MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+        headers.putSingle(HttpHeaders.ETAG, "\"1\"");
+        cache.put(key, null, new byte[] { 1 }, MediaType.TEXT_HTML_TYPE, headers);
+        headers.putSingle(HttpHeaders.ETAG, "\"2\"");
+        headers.putSingle(HttpHeaders.CONTENT_ENCODING, "gzip");
+        cache.put(key, "gzip", new byte[] { 2 }, MediaType.TEXT_HTML_TYPE, headers);
+        assertArrayEquals(new byte[] { 1 }, cache.get(key, null).getBody());
+        assertEquals("gzip", cache.get(key, "gzip").getContentEncoding());
+        assertEquals("\"2\"", cache.get(key, "gzip").getETag());
+        assertNull(cache.get(key, "deflate"));
+    }
+
+    /**
+     * Test that overloaded controller methods do not share entries.
+     *
+     * @throws Exception when a serious error occurs.
+     */
+    @Test
+    public void testOverloaded() throws Exception {
+        PageCache cache = new PageCache();
+        Method method1 = SomeController.class.getMethod("overloaded");
+        Method method2 = SomeController.class.getMethod("overloaded", String.class);
+        PageKey key1 = cache.createKey(method1, method1.getAnnotation(OutputCache.class), null,
+                request("/page", null, null, null), null);
+        PageKey key2 = cache.createKey(method2, method2.getAnnotation(OutputCache.class), null,
+                request("/page", null, null, null), null);
+        cache.put(key1, null, new byte[] { 1 }, MediaType.TEXT_HTML_TYPE, new MultivaluedHashMap<>());
+        cache.put(key2, null, new byte[] { 2 }, MediaType.TEXT_HTML_TYPE, new MultivaluedHashMap<>());
+        assertArrayEquals(new byte[] { 1 }, cache.get(key1, null).getBody());
+        assertArrayEquals(new byte[] { 2 }, cache.get(key2, null).getBody());
+    }
+
+    /**
+     * Test that the entry closest to expiring is evicted when a region is full.
+     *
+     * @throws Exception when a serious error occurs.
+     */
+    @Test
+    public void testEvict() throws Exception {
+        PageCache cache = new PageCache();
+        Method method = SomeController.class.getMethod("small");
+        OutputCache an = method.getAnnotation(OutputCache.class);
+        PageKey key1 = cache.createKey(method, an, null, request("/page1", null, null, null), null);
+        PageKey key2 = cache.createKey(method, an, null, request("/page2", null, null, null), null);
+        PageKey key3 = cache.createKey(method, an, null, request("/page3", null, null, null), null);
+        cache.put(key1, null, new byte[] { 1 }, MediaType.TEXT_HTML_TYPE, new MultivaluedHashMap<>());
+        cache.put(key2, null, new byte[] { 2 }, MediaType.TEXT_HTML_TYPE, new MultivaluedHashMap<>());
+        cache.put(key3, null, new byte[] { 3 }, MediaType.TEXT_HTML_TYPE, new MultivaluedHashMap<>());
+        assertNull(cache.get(key1, null));
+        assertArrayEquals(new byte[] { 2 }, cache.get(key2, null).getBody());
+        assertArrayEquals(new byte[] { 3 }, cache.get(key3, null).getBody());
+    }
+
+    /**
+     * Test that a single request at a time can claim the rendering of a view.
+     *
+     * @throws Exception when a serious error occurs.
+     */
+    @Test
+    public void testLead() throws Exception {
+        PageCache cache = new PageCache();
+        Method method = SomeController.class.getMethod("coalesced");
+        PageKey key = cache.createKey(method, method.getAnnotation(OutputCache.class), null,
+                request("/page", null, null, null), null);
+        PageCache.Flight flight = cache.lead(key);
+        assertNotNull(flight);
+        assertNull(cache.lead(key));
+        assertFalse(cache.await(key));
+
+        CountDownLatch started = new CountDownLatch(1);
+        Thread t = new Thread(() -> {
+            started.countDown();
+            cache.put(key, null, new byte[] { 1 }, MediaType.TEXT_HTML_TYPE, new MultivaluedHashMap<>());
+            cache.complete(flight);
+        });
+        t.start();
+        started.await();
+        assertTrue(cache.await(key));
+        t.join();
+        assertNotNull(cache.get(key, null));
+        assertNotNull(cache.lead(key));
+    }
+
+    private static HttpServletRequest accept(String accept) {
+        HttpServletRequest request = EasyMock.createNiceMock(HttpServletRequest.class);
+        expect(request.getRequestURI()).andReturn("/page").anyTimes();
+        expect(request.getHeader(HttpHeaders.ACCEPT)).andReturn(accept).anyTimes();
+        replay(request);
+        return request;
+    }
+
+    private static HttpServletRequest request(String uri, String query, String a, String header) {
+        HttpServletRequest request = EasyMock.createNiceMock(HttpServletRequest.class);
+        expect(request.getRequestURI()).andReturn(uri).anyTimes();
+        expect(request.getQueryString()).andReturn(query).anyTimes();
+        expect(request.getParameterValues("a")).andReturn(a != null ? new String[] { a } : null).anyTimes();
+        expect(request.getHeaders("X-Test")).andReturn(Collections.enumeration(
+                header != null ? Collections.singletonList(header) : Collections.emptyList())).anyTimes();
+        replay(request);
+        return request;
+    }
+
+    public static class SomeController {
+
+        @OutputCache(ttl = 1, unit = TimeUnit.MINUTES, varyByQuery = "a", varyByHeader = "X-Test",
+                varyByLocale = true)
+        public void varying() {
+        }
+
+        @OutputCache(ttl = 0)
+        public void expired() {
+        }
+
+        @OutputCache(ttl = 1, unit = TimeUnit.MINUTES, maxEntries = 2)
+        public void small() {
+        }
+
+        @OutputCache(ttl = 1, unit = TimeUnit.MINUTES, coalesceMillis = 100)
+        public void coalesced() {
+        }
+
+        @OutputCache(ttl = 1, unit = TimeUnit.MINUTES)
+        public void overloaded() {
+        }
+
+        @OutputCache(ttl = 1, unit = TimeUnit.MINUTES)
+        public void overloaded(String s) {
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.cdi;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The JUnit tests for the CookieRedirectScopeStore class.
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+public class CookieRedirectScopeStoreTest {
+
+    private static final long TTL = 600000L;
+
+    /**
+     * Test that signed and encrypted values can be decoded by a store with the same
+     * secret only.
+     */
+    @Test
+    public void testRoundTrip() {
+        for (boolean encrypt : new boolean[] { false, true }) {
+            CookieRedirectScopeStore store = new CookieRedirectScopeStore("secret", encrypt);
+            Map<String, Object> instances = instances();
+            String value = store.encode(instances, 1000L);
+            assertTrue(value.matches("[A-Za-z0-9_-]+"));
+            assertEquals(instances, store.decode(value, 2000L, TTL));
+            assertNull(new CookieRedirectScopeStore("other", encrypt).decode(value, 2000L, TTL));
+            assertNull(new CookieRedirectScopeStore("secret", !encrypt).decode(value, 2000L, TTL));
+        }
+    }
+
+    /**
+     * Test that tampered, malformed and expired values are rejected.
+     */
+    @Test
+    public void testRejected() {
+        CookieRedirectScopeStore store = new CookieRedirectScopeStore("secret", false);
+        String value = store.encode(instances(), 1000L);
+        char[] chars = value.toCharArray();
+        chars[chars.length / 2] = chars[chars.length / 2] == 'A' ? 'B' : 'A';
+        assertNull(store.decode(new String(chars), 2000L, TTL));
+        assertNull(store.decode("not base64!", 2000L, TTL));
+        assertNull(store.decode("", 2000L, TTL));
+        assertNull(store.decode(value, 1000L + TTL + 1, TTL));
+    }
+
+    /**
+     * Test that instances that cannot be serialized are not encoded.
+     */
+    @Test
+    public void testNotSerializable() {
+        CookieRedirectScopeStore store = new CookieRedirectScopeStore("secret", false);
+        assertNull(store.encode(Collections.singletonMap("bean", new Object()), 1000L));
+    }
+
+    private static Map<String, Object> instances() {
+        Map<String, Object> instances = new HashMap<>();
+        instances.put("WELD%ManagedBean%app|example.Flash|null|false", "Saved!");
+        instances.put("WELD%ManagedBean%app|example.Form|null|false", new ArrayList<>(Collections.nCopies(3, 42)));
+        return instances;
+    }
+}
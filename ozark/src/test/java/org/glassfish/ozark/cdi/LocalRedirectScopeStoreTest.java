@@ -0,0 +1,111 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.cdi;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The JUnit tests for the LocalRedirectScopeStore class.
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+public class LocalRedirectScopeStoreTest {
+
+    /**
+     * Test get, put and remove methods.
+     */
+    @Test
+    public void testPutGetRemove() {
+        LocalRedirectScopeStore store = new LocalRedirectScopeStore(10, TimeUnit.MINUTES);
+        RedirectScope scope = new RedirectScope();
+        store.put(null, "a", scope);
+        assertSame(scope, store.get(null, "a"));
+        assertNull(store.get(null, "b"));
+        assertSame(scope, store.remove(null, "a"));
+        assertNull(store.get(null, "a"));
+        assertNull(store.remove(null, "a"));
+    }
+
+    /**
+     * Test that expired scopes are not returned and are removed by a sweep.
+     */
+    @Test
+    public void testExpiry() {
+        LocalRedirectScopeStore store = new LocalRedirectScopeStore(0, TimeUnit.SECONDS);
+        store.put(null, "a", new RedirectScope());
+        assertNull(store.get(null, "a"));
+
+        store = new LocalRedirectScopeStore(1, TimeUnit.HOURS);
+        store.put(null, "a", new RedirectScope());
+        store.put(null, "b", new RedirectScope());
+        assertEquals(2, store.size());
+        store.sweep(System.nanoTime() + TimeUnit.HOURS.toNanos(2));
+        assertEquals(0, store.size());
+        assertEquals(0, store.getLiveScopes());
+        assertEquals(2, store.getReapedScopes());
+    }
+
+    /**
+     * Test that putIfAbsent keeps live scopes and replaces expired scopes.
+     */
+    @Test
+    public void testPutIfAbsent() {
+        LocalRedirectScopeStore store = new LocalRedirectScopeStore(1, TimeUnit.HOURS);
+        RedirectScope a = new RedirectScope();
+        assertTrue(store.putIfAbsent(null, "a", a));
+        assertFalse(store.putIfAbsent(null, "a", new RedirectScope()));
+        assertSame(a, store.get(null, "a"));
+
+        store = new LocalRedirectScopeStore(0, TimeUnit.SECONDS);
+        store.put(null, "a", a);
+        RedirectScope b = new RedirectScope();
+        assertTrue(store.putIfAbsent(null, "a", b));
+        assertEquals(0, store.size());          // new scope expires at once too
+        assertEquals(2, store.getReapedScopes());
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.cdi;
+
+import org.junit.Test;
+
+import javax.enterprise.context.spi.Contextual;
+import javax.enterprise.context.spi.CreationalContext;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * The JUnit tests for the RedirectScope class.
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+public class RedirectScopeTest {
+
+    /**
+     * Test that instances are destroyed by their own contextual.
+     */
+    @Test
+    public void testDestroy() {
+        List<Object> destroyed = new ArrayList<>();
+        Contextual<String> contextual = new Contextual<String>() {
+            @Override
+            public String create(CreationalContext<String> creational) {
+                return null;
+            }
+
+            @Override
+            public void destroy(String instance, CreationalContext<String> creational) {
+                destroyed.add(instance);
+            }
+        };
+        CreationalContext<String> creational = new CreationalContext<String>() {
+            @Override
+            public void push(String incompleteInstance) {
+            }
+
+            @Override
+            public void release() {
+                destroyed.add(this);
+            }
+        };
+        RedirectScope scope = new RedirectScope();
+        scope.put("a", contextual, "x", creational);
+        scope.put("b", contextual, "y", creational);
+        assertSame("x", scope.getInstance("a"));
+
+        scope.destroy("a");
+        assertNull(scope.getInstance("a"));
+        assertEquals(2, destroyed.size());
+        assertSame("x", destroyed.get(0));
+
+        scope.destroy();
+        assertNull(scope.getInstance("b"));
+        assertEquals(4, destroyed.size());
+        assertSame("y", destroyed.get(2));
+        assertEquals(0, scope.getInstances().size());
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.cdi;
+
+import org.junit.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpSessionBindingEvent;
+import javax.servlet.http.HttpSessionBindingListener;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The JUnit tests for the SessionRedirectScopeStore class.
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+public class SessionRedirectScopeStoreTest {
+
+    /**
+     * Test that no session is created to look up a scope.
+     */
+    @Test
+    public void testNoSession() {
+        SessionRedirectScopeStore store = new SessionRedirectScopeStore(10, TimeUnit.MINUTES, 10);
+        Map<String, Object> attributes = new HashMap<>();
+        HttpServletRequest request = request(attributes, false);
+        assertNull(store.get(request, "a"));
+        assertNull(store.remove(request, "a"));
+    }
+
+    /**
+     * Test that the oldest scopes beyond the maximum per session are reaped.
+     */
+    @Test
+    public void testMaxScopes() {
+        SessionRedirectScopeStore store = new SessionRedirectScopeStore(10, TimeUnit.MINUTES, 2);
+        HttpServletRequest request = request(new HashMap<>(), true);
+        RedirectScope a = new RedirectScope();
+        RedirectScope b = new RedirectScope();
+        RedirectScope c = new RedirectScope();
+        store.put(request, "a", a);
+        store.put(request, "b", b);
+        store.put(request, "b", b);
+        store.put(request, "c", c);
+        assertNull(store.get(request, "a"));
+        assertSame(b, store.get(request, "b"));
+        assertSame(c, store.get(request, "c"));
+        assertEquals(2, store.getLiveScopes());
+        assertEquals(1, store.getReapedScopes());
+
+        assertSame(b, store.remove(request, "b"));
+        assertEquals(1, store.getLiveScopes());
+        assertEquals(1, store.getReapedScopes());
+    }
+
+    /**
+     * Test that putIfAbsent keeps live scopes.
+     */
+    @Test
+    public void testPutIfAbsent() {
+        SessionRedirectScopeStore store = new SessionRedirectScopeStore(10, TimeUnit.MINUTES, 10);
+        HttpServletRequest request = request(new HashMap<>(), true);
+        RedirectScope a = new RedirectScope();
+        assertTrue(store.putIfAbsent(request, "a", a));
+        assertFalse(store.putIfAbsent(request, "a", new RedirectScope()));
+        assertSame(a, store.get(request, "a"));
+        assertEquals(1, store.getLiveScopes());
+    }
+
+    /**
+     * Test that concurrent first puts into a session keep both scopes.
+     *
+     * @throws Exception when a serious error occurs.
+     */
+    @Test
+    public void testConcurrentFirstPut() throws Exception {
+        SessionRedirectScopeStore store = new SessionRedirectScopeStore(10, TimeUnit.MINUTES, 10);
+        for (int i = 0; i < 100; i++) {
+            HttpServletRequest request = request(new HashMap<>(), true);
+            RedirectScope a = new RedirectScope();
+            RedirectScope b = new RedirectScope();
+            CyclicBarrier barrier = new CyclicBarrier(2);
+            boolean[] added = new boolean[1];
+            Thread thread = new Thread(() -> {
+                try {
+                    barrier.await();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+                added[0] = store.putIfAbsent(request, "a", a);
+            });
+            thread.start();
+            barrier.await();
+            assertTrue(store.putIfAbsent(request, "b", b));
+            thread.join();
+            assertTrue(added[0]);
+            assertSame(a, store.get(request, "a"));
+            assertSame(b, store.get(request, "b"));
+        }
+        assertEquals(200, store.getLiveScopes());
+    }
+
+    /**
+     * Test that expired scopes are reaped.
+     */
+    @Test
+    public void testExpiry() {
+        SessionRedirectScopeStore store = new SessionRedirectScopeStore(0, TimeUnit.SECONDS, 10);
+        HttpServletRequest request = request(new HashMap<>(), true);
+        store.put(request, "a", new RedirectScope());
+        assertNull(store.get(request, "a"));
+        assertEquals(0, store.getLiveScopes());
+        assertEquals(1, store.getReapedScopes());
+    }
+
+    /**
+     * Test that scopes left when the session ends are reaped.
+     */
+    @Test
+    public void testSessionEnd() {
+        SessionRedirectScopeStore store = new SessionRedirectScopeStore(10, TimeUnit.MINUTES, 10);
+        Map<String, Object> attributes = new HashMap<>();
+        HttpServletRequest request = request(attributes, true);
+        store.put(request, "a", new RedirectScope());
+        store.put(request, "b", new RedirectScope());
+        for (Object value : attributes.values()) {
+            ((HttpSessionBindingListener) value).valueUnbound(
+                    new HttpSessionBindingEvent(request.getSession(), "scopes"));
+        }
+        assertEquals(0, store.getLiveScopes());
+        assertEquals(2, store.getReapedScopes());
+    }
+
+    private static HttpServletRequest request(Map<String, Object> attributes, boolean hasSession) {
+        HttpSession session = (HttpSession) Proxy.newProxyInstance(HttpSession.class.getClassLoader(),
+                new Class<?>[] { HttpSession.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getAttribute":
+                            return attributes.get(args[0]);
+                        case "setAttribute":
+                            return attributes.put((String) args[0], args[1]);
+                        case "removeAttribute":
+                            return attributes.remove(args[0]);
+                        default:
+                            return null;
+                    }
+                });
+        return (HttpServletRequest) Proxy.newProxyInstance(HttpServletRequest.class.getClassLoader(),
+                new Class<?>[] { HttpServletRequest.class }, (proxy, method, args) -> {
+                    if (method.getName().equals("getSession")) {
+                        return hasSession || args == null || (Boolean) args[0] ? session : null;
+                    }
+                    return null;
+                });
+    }
+}
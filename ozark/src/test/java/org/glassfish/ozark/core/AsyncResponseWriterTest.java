@@ -0,0 +1,110 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.core;
+
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import java.io.IOException;
+
+import static org.easymock.EasyMock.anyInt;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The JUnit tests for the AsyncResponseWriter class.
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+public class AsyncResponseWriterTest {
+
+    /**
+     * Test that the view is written and the context completed.
+     *
+     * @throws IOException when an I/O error occurs.
+     */
+    @Test
+    public void testWrite() throws IOException {
+        AsyncContext asyncContext = EasyMock.createStrictMock(AsyncContext.class);
+        ServletOutputStream out = EasyMock.createStrictMock(ServletOutputStream.class);
+        expect(out.isReady()).andReturn(true);
+        out.write(anyObject(byte[].class), EasyMock.eq(0), EasyMock.eq(3));
+        expect(out.isReady()).andReturn(true);
+        asyncContext.complete();
+        replay(asyncContext, out);
+
+        RenderBuffer renderBuffer = new RenderBuffer(0);
+        renderBuffer.write(new byte[] { 1, 2, 3 });
+        new AsyncResponseWriter(asyncContext, out, renderBuffer).onWritePossible();
+        verify(asyncContext, out);
+        assertEquals(0, renderBuffer.size());
+    }
+
+    /**
+     * Test that the context is completed once if a write fails and the container
+     * then reports the error.
+     *
+     * @throws IOException when an I/O error occurs.
+     */
+    @Test
+    public void testWriteError() throws IOException {
+        AsyncContext asyncContext = EasyMock.createStrictMock(AsyncContext.class);
+        ServletOutputStream out = EasyMock.createStrictMock(ServletOutputStream.class);
+        expect(out.isReady()).andReturn(true);
+        out.write(anyObject(byte[].class), anyInt(), anyInt());
+        expectLastCall().andThrow(new IOException());
+        asyncContext.complete();
+        replay(asyncContext, out);
+
+        RenderBuffer renderBuffer = new RenderBuffer(0);
+        renderBuffer.write(new byte[] { 1, 2, 3 });
+        AsyncResponseWriter writer = new AsyncResponseWriter(asyncContext, out, renderBuffer);
+        writer.onWritePossible();
+        writer.onError(new IOException());
+        verify(asyncContext, out);
+        assertEquals(0, renderBuffer.size());
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.core;
+
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The JUnit tests for the BufferedServletOutputStream class.
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+public class BufferedServletOutputStreamTest {
+
+    /**
+     * Test that small writes are buffered until flushed.
+     *
+     * @throws IOException when an I/O error occurs.
+     */
+    @Test
+    public void testBufferedWrite() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BufferedServletOutputStream stream = new BufferedServletOutputStream(out, 4);
+        stream.write('a');
+        stream.write(new byte[] { 'b', 'c' }, 0, 2);
+        assertEquals(0, out.size());
+        stream.write('d');
+        stream.write('e');
+        assertEquals(4, out.size());
+        stream.flush();
+        assertArrayEquals("abcde".getBytes(), out.toByteArray());
+    }
+
+    /**
+     * Test that writes larger than the buffer are passed through.
+     *
+     * @throws IOException when an I/O error occurs.
+     */
+    @Test
+    public void testLargeWrite() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BufferedServletOutputStream stream = new BufferedServletOutputStream(out, 4);
+        stream.write('a');
+        stream.write("bcdefgh".getBytes(), 0, 7);
+        assertArrayEquals("abcdefgh".getBytes(), out.toByteArray());
+    }
+
+    /**
+     * Test that a buffer size of zero disables buffering.
+     *
+     * @throws IOException when an I/O error occurs.
+     */
+    @Test
+    public void testUnbuffered() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BufferedServletOutputStream stream = new BufferedServletOutputStream(out, 0);
+        stream.write('a');
+        stream.write("bc".getBytes(), 0, 2);
+        assertArrayEquals("abc".getBytes(), out.toByteArray());
+    }
+
+    /**
+     * Test counting of bytes written, including buffered ones.
+     *
+     * @throws IOException when an I/O error occurs.
+     */
+    @Test
+    public void testBytesWritten() throws IOException {
+        BufferedServletOutputStream stream = new BufferedServletOutputStream(new ByteArrayOutputStream(), 4);
+        stream.write('a');
+        assertEquals(1, stream.getBytesWritten());
+        stream.write("bcdefgh".getBytes(), 0, 7);
+        stream.write("ij".getBytes(), 0, 2);
+        assertEquals(10, stream.getBytesWritten());
+        stream.setOutputStream(new ByteArrayOutputStream());
+        assertEquals(0, stream.getBytesWritten());
+    }
+
+    /**
+     * Test that non-blocking writes are delegated to a servlet stream, and that a
+     * listener is notified at once for other streams.
+     *
+     * @throws IOException when an I/O error occurs.
+     */
+    @Test
+    public void testWriteListener() throws IOException {
+        WriteListener listener = EasyMock.createStrictMock(WriteListener.class);
+        listener.onWritePossible();
+        EasyMock.replay(listener);
+        BufferedServletOutputStream stream = new BufferedServletOutputStream(new ByteArrayOutputStream(), 4);
+        assertTrue(stream.isReady());
+        stream.setWriteListener(listener);
+        EasyMock.verify(listener);
+
+        ServletOutputStream out = EasyMock.createStrictMock(ServletOutputStream.class);
+        EasyMock.expect(out.isReady()).andReturn(false);
+        out.setWriteListener(listener);
+        EasyMock.replay(out);
+        stream = new BufferedServletOutputStream(out, 4);
+        assertFalse(stream.isReady());
+        stream.setWriteListener(listener);
+        EasyMock.verify(out);
+    }
+}
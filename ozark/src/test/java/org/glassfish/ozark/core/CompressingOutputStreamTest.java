@@ -0,0 +1,173 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.core;
+
+import org.junit.Test;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The JUnit tests for the CompressingOutputStream class.
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+public class CompressingOutputStreamTest {
+
+    /**
+     * Test that output below the minimum size is written as is.
+     *
+     * @throws IOException when an I/O error occurs.
+     */
+    @Test
+    public void testMinSize() throws IOException {
+        byte[] data = data(100);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+        CompressingOutputStream stream = new CompressingOutputStream();
+        stream.open(out, headers, CompressingOutputStream.GZIP, 1024);
+        stream.write(data, 0, data.length);
+        assertEquals(0, out.size());
+        stream.finish();
+        stream.release();
+        assertArrayEquals(data, out.toByteArray());
+        assertFalse(headers.containsKey(HttpHeaders.CONTENT_ENCODING));
+    }
+
+    /**
+     * Test gzip and deflate codings, recycling the stream in between.
+     *
+     * @throws IOException when an I/O error occurs.
+     */
+    @Test
+    public void testCompress() throws IOException {
+        byte[] data = data(100000);
+        CompressingOutputStream stream = new CompressingOutputStream();
+        for (int i = 0; i < 2; i++) {
+            for (String encoding : new String[] { CompressingOutputStream.GZIP, CompressingOutputStream.DEFLATE }) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+                stream.open(out, headers, encoding, 1024);
+                stream.write(data, 0, 10);
+                stream.write(data, 10, data.length - 10);
+                stream.finish();
+                stream.release();
+                assertEquals(encoding, headers.getFirst(HttpHeaders.CONTENT_ENCODING));
+                assertTrue(out.size() < data.length / 5);
+                InputStream in = new ByteArrayInputStream(out.toByteArray());
+                in = encoding.equals(CompressingOutputStream.GZIP) ? new GZIPInputStream(in) : new InflaterInputStream(in);
+                assertArrayEquals(data, read(in));
+            }
+        }
+    }
+
+    /**
+     * Test that flush emits everything written so far in a form that can be inflated
+     * before the stream is finished.
+     *
+     * @throws IOException when an I/O error occurs.
+     */
+    @Test
+    public void testFlush() throws IOException {
+        byte[] data = data(5000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+        CompressingOutputStream stream = new CompressingOutputStream();
+        stream.open(out, headers, CompressingOutputStream.DEFLATE, 1024);
+        for (byte b : data) {
+            stream.write(b);
+        }
+        stream.flush();
+        Inflater inflater = new Inflater();
+        inflater.setInput(out.toByteArray());
+        byte[] inflated = new byte[data.length];
+        int n = 0;
+        try {
+            while (n < inflated.length) {
+                int m = inflater.inflate(inflated, n, inflated.length - n);
+                if (m == 0) {
+                    break;
+                }
+                n += m;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        } finally {
+            inflater.end();
+        }
+        assertEquals(data.length, n);
+        assertArrayEquals(data, inflated);
+        stream.finish();
+        stream.release();
+        assertArrayEquals(data, read(new InflaterInputStream(new ByteArrayInputStream(out.toByteArray()))));
+    }
+
+    private static byte[] data(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) "<li>item</li>\n".charAt(i % 14);
+        }
+        return data;
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] b = new byte[1000];
+        int n;
+        while ((n = in.read(b)) >= 0) {
+            out.write(b, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.core;
+
+import org.glassfish.ozark.annotation.AsyncWrite;
+import org.glassfish.ozark.annotation.CacheControl;
+import org.glassfish.ozark.annotation.OutputCache;
+import org.junit.Test;
+
+import javax.mvc.Viewable;
+import javax.mvc.annotation.Controller;
+import javax.mvc.annotation.View;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The JUnit tests for the ControllerDescriptor class.
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+public class ControllerDescriptorTest {
+
+    /**
+     * Test metadata resolved from method and class annotations.
+     *
+     * @throws Exception when a serious error occurs.
+     */
+    @Test
+    public void testOf() throws Exception {
+        ControllerDescriptor d1 = ControllerDescriptor.of(SomeController.class,
+                SomeController.class.getMethod("method"));
+        assertEquals("method.jsp", d1.getView());
+        assertEquals(2, d1.getVariants().size());
+        assertEquals(MediaType.APPLICATION_XML_TYPE, d1.getVariants().get(1).getMediaType());
+        assertTrue(d1.isVoidObject());
+        assertSame(d1, ControllerDescriptor.of(SomeController.class, SomeController.class.getMethod("method")));
+
+        ControllerDescriptor d2 = ControllerDescriptor.of(SomeController.class,
+                SomeController.class.getMethod("inherited"));
+        assertEquals("class.jsp", d2.getView());
+        assertEquals(MediaType.TEXT_PLAIN_TYPE, d2.getVariants().get(0).getMediaType());
+        assertFalse(d2.isVoidObject());
+
+        ControllerDescriptor d3 = ControllerDescriptor.of(Object.class, Object.class.getMethod("toString"));
+        assertNull(d3.getView());
+        assertNull(d3.getVariants());
+        assertNull(d3.getCacheControl());
+    }
+
+    /**
+     * Test that requests not matched to a resource method get a descriptor without
+     * any metadata.
+     */
+    @Test
+    public void testNoMethod() {
+        ControllerDescriptor d = ControllerDescriptor.of(null, null);
+        assertNull(d.getView());
+        assertNull(d.getVariants());
+        assertNull(d.getCacheControl());
+        assertNull(d.getOutputCache());
+        assertNull(d.getAsyncWrite());
+        assertFalse(d.isVoidObject());
+    }
+
+    /**
+     * Test Cache-Control header values from method and class annotations.
+     *
+     * @throws Exception when a serious error occurs.
+     */
+    @Test
+    public void testCacheControl() throws Exception {
+        assertEquals("public, max-age=60, stale-while-revalidate=120", ControllerDescriptor.of(SomeController.class,
+                SomeController.class.getMethod("inherited")).getCacheControl());
+        assertEquals("private, max-age=0, s-maxage=3600", ControllerDescriptor.of(SomeController.class,
+                SomeController.class.getMethod("method")).getCacheControl());
+    }
+
+    /**
+     * Test output cache and asynchronous write annotations on method and class.
+     *
+     * @throws Exception when a serious error occurs.
+     */
+    @Test
+    public void testOutputCacheAndAsyncWrite() throws Exception {
+        ControllerDescriptor d1 = ControllerDescriptor.of(SomeController.class,
+                SomeController.class.getMethod("method"));
+        assertEquals(10, d1.getOutputCache().ttl());
+        assertEquals(Boolean.TRUE, d1.getAsyncWrite());
+
+        ControllerDescriptor d2 = ControllerDescriptor.of(SomeController.class,
+                SomeController.class.getMethod("inherited"));
+        assertEquals(60, d2.getOutputCache().ttl());
+        assertEquals(Boolean.FALSE, d2.getAsyncWrite());
+
+        ControllerDescriptor d3 = ControllerDescriptor.of(Object.class, Object.class.getMethod("toString"));
+        assertNull(d3.getOutputCache());
+        assertNull(d3.getAsyncWrite());
+    }
+
+    @Controller
+    @View("class.jsp")
+    @Produces("text/plain")
+    @CacheControl(maxAge = 1, staleWhileRevalidate = 2, unit = TimeUnit.MINUTES)
+    @OutputCache(ttl = 60)
+    @AsyncWrite(false)
+    public static class SomeController {
+
+        @View("method.jsp")
+        @OutputCache(ttl = 10)
+        @AsyncWrite
+        @CacheControl(maxAge = 0, sMaxAge = 3600, isPrivate = true)
+        @Produces({"text/html", "application/xml"})
+        public Void method() {
+            return null;
+        }
+
+        public Viewable inherited() {
+            return null;
+        }
+    }
+}
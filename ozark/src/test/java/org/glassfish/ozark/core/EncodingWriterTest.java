@@ -0,0 +1,137 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The JUnit tests for the EncodingWriter class.
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+public class EncodingWriterTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Test writing strings larger than the internal buffers.
+     *
+     * @throws IOException when an I/O error occurs.
+     */
+    @Test
+    public void testLargeWrite() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            sb.append("été ");
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EncodingWriter writer = new EncodingWriter();
+        writer.setOutputStream(out, UTF8);
+        writer.write(sb.toString());
+        writer.finish();
+        assertArrayEquals(sb.toString().getBytes(UTF8), out.toByteArray());
+    }
+
+    /**
+     * Test that a surrogate pair split across a flush is encoded correctly.
+     *
+     * @throws IOException when an I/O error occurs.
+     */
+    @Test
+    public void testSurrogatePair() throws IOException {
+        String s = "😀";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EncodingWriter writer = new EncodingWriter();
+        writer.setOutputStream(out, UTF8);
+        writer.write(s.charAt(0));
+        writer.flush();
+        writer.write(s.charAt(1));
+        writer.finish();
+        assertArrayEquals(s.getBytes(UTF8), out.toByteArray());
+    }
+
+    /**
+     * Test that a writer can be re-targeted to another stream and charset.
+     *
+     * @throws IOException when an I/O error occurs.
+     */
+    @Test
+    public void testRecycle() throws IOException {
+        EncodingWriter writer = new EncodingWriter();
+        ByteArrayOutputStream out1 = new ByteArrayOutputStream();
+        writer.setOutputStream(out1, UTF8);
+        writer.write("café");
+        writer.finish();
+        assertEquals(5, out1.size());
+
+        ByteArrayOutputStream out2 = new ByteArrayOutputStream();
+        writer.setOutputStream(out2, Charset.forName("ISO-8859-1"));
+        writer.write("café€");
+        writer.finish();
+        assertArrayEquals(new byte[] { 'c', 'a', 'f', (byte) 0xe9, '?' }, out2.toByteArray());
+    }
+
+    /**
+     * Test counting of characters written, including those not yet encoded.
+     *
+     * @throws IOException when an I/O error occurs.
+     */
+    @Test
+    public void testCharsWritten() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            sb.append("été ");
+        }
+        EncodingWriter writer = new EncodingWriter();
+        writer.setOutputStream(new ByteArrayOutputStream(), UTF8);
+        writer.write(sb.toString());
+        writer.write('!');
+        assertEquals(20001, writer.getCharsWritten());
+        writer.finish();
+        assertEquals(20001, writer.getCharsWritten());
+    }
+}
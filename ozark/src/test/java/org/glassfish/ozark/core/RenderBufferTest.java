@@ -0,0 +1,124 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The JUnit tests for the RenderBuffer class.
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+public class RenderBufferTest {
+
+    /**
+     * Test writes that span several chunks.
+     *
+     * @throws IOException when an I/O error occurs.
+     */
+    @Test
+    public void testChunks() throws IOException {
+        byte[] data = data(3 * BufferPool.CHUNK_SIZE + 17);
+        RenderBuffer buffer = new RenderBuffer(0);
+        buffer.write(data[0]);
+        buffer.write(data, 1, data.length - 1);
+        assertEquals(data.length, buffer.size());
+        assertFalse(buffer.isSpilled());
+        assertArrayEquals(data, toByteArray(buffer));
+        assertArrayEquals(data, read(buffer.getInputStream()));
+        buffer.release();
+        assertEquals(0, buffer.size());
+    }
+
+    /**
+     * Test that contents are moved to a temporary file above the threshold.
+     *
+     * @throws IOException when an I/O error occurs.
+     */
+    @Test
+    public void testSpill() throws IOException {
+        byte[] data = data(2 * BufferPool.CHUNK_SIZE);
+        RenderBuffer buffer = new RenderBuffer(BufferPool.CHUNK_SIZE + 1);
+        buffer.write(data, 0, BufferPool.CHUNK_SIZE);
+        assertFalse(buffer.isSpilled());
+        buffer.write(data, BufferPool.CHUNK_SIZE, BufferPool.CHUNK_SIZE);
+        assertTrue(buffer.isSpilled());
+        assertEquals(data.length, buffer.size());
+        assertArrayEquals(data, toByteArray(buffer));
+        try (InputStream in = buffer.getInputStream()) {
+            assertArrayEquals(data, read(in));
+        }
+        buffer.release();
+        assertFalse(buffer.isSpilled());
+    }
+
+    private static byte[] data(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+
+    private static byte[] toByteArray(RenderBuffer buffer) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        buffer.writeTo(out);
+        return out.toByteArray();
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] b = new byte[1000];
+        int n;
+        while ((n = in.read(b)) >= 0) {
+            out.write(b, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
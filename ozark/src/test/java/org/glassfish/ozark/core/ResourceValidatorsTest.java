@@ -0,0 +1,103 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.core;
+
+import org.glassfish.ozark.annotation.LastModified;
+import org.glassfish.ozark.annotation.ResourceVersion;
+import org.junit.Test;
+
+import javax.ws.rs.core.EntityTag;
+import java.time.Instant;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The JUnit tests for the ResourceValidators class.
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+public class ResourceValidatorsTest {
+
+    /**
+     * Test a class without companion methods.
+     */
+    @Test
+    public void testNone() {
+        assertNull(ResourceValidators.of(Object.class));
+    }
+
+    /**
+     * Test lookup and invocation of companion methods, also through a subclass as
+     * created by CDI for proxies.
+     */
+    @Test
+    public void testValidators() {
+        for (Object resource : new Object[] { new SomeController(), new SomeController() { } }) {
+            ResourceValidators validators = ResourceValidators.of(resource.getClass());
+            assertTrue(validators.isIncludeView());
+            assertEquals(1000L, validators.getLastModified(resource));
+            assertEquals(new EntityTag("v42", true), validators.getVersion(resource));
+        }
+    }
+
+    /**
+     * Test other return types of companion methods.
+     */
+    @Test
+    public void testReturnTypes() {
+        ResourceValidators validators = ResourceValidators.of(OtherController.class);
+        assertFalse(validators.isIncludeView());
+        assertEquals(2000L, validators.getLastModified(new OtherController()));
+        assertNull(validators.getVersion(new OtherController()));
+    }
+
+    public static class SomeController {
+        @LastModified(includeView = true) public Date lastModified() { return new Date(1000L); }
+        @ResourceVersion public String version() { return "v42"; }
+    }
+
+    public static class OtherController {
+        @LastModified public Instant lastModified() { return Instant.ofEpochMilli(2000L); }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.core;
+
+import org.easymock.Capture;
+import org.easymock.EasyMock;
+import org.glassfish.ozark.annotation.LastModified;
+import org.glassfish.ozark.annotation.ResourceVersion;
+import org.glassfish.ozark.cdi.OzarkCdiExtension;
+import org.glassfish.ozark.event.MvcEventDispatcher;
+import org.junit.Test;
+
+import javax.mvc.event.AfterControllerEvent;
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.Date;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * The JUnit tests for the ViewRequestFilter class.
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+public class ViewRequestFilterTest {
+
+    /**
+     * Test that a request is aborted with 304 if the validators of the controller match,
+     * and that no {@link javax.mvc.event.AfterControllerEvent} is fired for it.
+     *
+     * @throws Exception when a serious error occurs.
+     */
+    @Test
+    public void testNotModified() throws Exception {
+        OzarkCdiExtension.addObservedEvent(AfterControllerEvent.class);
+        SomeController controller = new SomeController();
+
+        ViewRequestFilter requestFilter = new ViewRequestFilter();
+        UriInfo uriInfo = EasyMock.createNiceMock(UriInfo.class);
+        expect(uriInfo.getMatchedResources()).andStubReturn(Collections.singletonList(controller));
+        setField(requestFilter, "uriInfo", uriInfo);
+        ResourceInfo resourceInfo = EasyMock.createNiceMock(ResourceInfo.class);
+        expect(resourceInfo.getResourceClass()).andStubReturn((Class) SomeController.class);
+        setField(requestFilter, "resourceInfo", resourceInfo);
+        setField(requestFilter, "dispatcher", EasyMock.createNiceMock(MvcEventDispatcher.class));
+
+        Request request = EasyMock.createStrictMock(Request.class);
+        expect(request.evaluatePreconditions(eq(new Date(1000L)), eq(new EntityTag("v42", true))))
+                .andReturn(Response.notModified());
+
+        Capture<Response> response = new Capture<>();
+        ContainerRequestContext requestContext = EasyMock.createNiceMock(ContainerRequestContext.class);
+        expect(requestContext.getMethod()).andStubReturn(HttpMethod.GET);
+        expect(requestContext.getRequest()).andStubReturn(request);
+        requestContext.setProperty(ViewRequestFilter.NOT_MODIFIED, Boolean.TRUE);
+        requestContext.abortWith(capture(response));
+        expect(requestContext.getProperty(ViewRequestFilter.NOT_MODIFIED)).andStubReturn(Boolean.TRUE);
+
+        replay(uriInfo, resourceInfo, request, requestContext);
+        requestFilter.filter(requestContext);
+        verify(request, requestContext);
+        assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(), response.getValue().getStatus());
+        assertNotNull(response.getValue().getHeaderString(HttpHeaders.LAST_MODIFIED));
+
+        // No event fired for the aborted request
+        ViewResponseFilter responseFilter = new ViewResponseFilter();
+        setField(responseFilter, "resourceInfo", resourceInfo);
+        MvcEventDispatcher dispatcher = EasyMock.createStrictMock(MvcEventDispatcher.class);
+        setField(responseFilter, "dispatcher", dispatcher);
+        ContainerResponseContext responseContext = EasyMock.createNiceMock(ContainerResponseContext.class);
+        expect(responseContext.getStatus()).andStubReturn(Response.Status.NOT_MODIFIED.getStatusCode());
+
+        replay(dispatcher, responseContext);
+        responseFilter.filter(requestContext, responseContext);
+        verify(dispatcher);
+    }
+
+    private static void setField(Object target, String name, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    public static class SomeController {
+        @LastModified public Date lastModified() { return new Date(1000L); }
+        @ResourceVersion public String version() { return "v42"; }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.core;
+
+import org.easymock.EasyMock;
+import org.glassfish.ozark.event.MvcEventDispatcher;
+import org.junit.Test;
+
+import javax.mvc.Viewable;
+import javax.mvc.annotation.View;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.Produces;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import java.lang.reflect.Field;
+
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * The JUnit tests for the ViewResponseFilter class.
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+public class ViewResponseFilterTest {
+
+    /**
+     * Test that a Vary header is added for methods producing more than one media type,
+     * whether the view is given by {@link javax.mvc.annotation.View} or returned.
+     *
+     * @throws Exception when a serious error occurs.
+     */
+    @Test
+    public void testVary() throws Exception {
+        assertEquals(HttpHeaders.ACCEPT, filter("voidMethod", null).getFirst(HttpHeaders.VARY));
+        assertEquals(HttpHeaders.ACCEPT, filter("stringMethod", "view.jsp").getFirst(HttpHeaders.VARY));
+        assertEquals(HttpHeaders.ACCEPT, filter("viewableMethod", new Viewable("view.jsp")).getFirst(HttpHeaders.VARY));
+        assertNull(filter("singleMethod", "view.jsp").getFirst(HttpHeaders.VARY));
+    }
+
+    private static MultivaluedMap<String, Object> filter(String methodName, Object entity) throws Exception {
+        ViewResponseFilter filter = new ViewResponseFilter();
+
+        ResourceInfo resourceInfo = EasyMock.createNiceMock(ResourceInfo.class);
+        expect(resourceInfo.getResourceClass()).andStubReturn((Class) SomeController.class);
+        expect(resourceInfo.getResourceMethod()).andStubReturn(SomeController.class.getMethod(methodName));
+        setField(filter, "resourceInfo", resourceInfo);
+        HttpServletRequest request = EasyMock.createNiceMock(HttpServletRequest.class);
+        setField(filter, "request", request);
+        setField(filter, "dispatcher", EasyMock.createNiceMock(MvcEventDispatcher.class));
+
+        ContainerRequestContext requestContext = EasyMock.createNiceMock(ContainerRequestContext.class);
+        ContainerResponseContext responseContext = EasyMock.createNiceMock(ContainerResponseContext.class);
+        MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+        expect(responseContext.getHeaders()).andStubReturn(headers);
+        expect(responseContext.getEntity()).andReturn(entity);     // not updated by setEntity
+        expect(responseContext.getEntity()).andStubReturn(null);
+        expect(responseContext.getMediaType()).andStubReturn(MediaType.TEXT_HTML_TYPE);
+        expect(responseContext.getStatusInfo()).andStubReturn(Response.Status.OK);
+        expect(responseContext.getStatus()).andStubReturn(Response.Status.OK.getStatusCode());
+
+        replay(resourceInfo, request, requestContext, responseContext);
+        filter.filter(requestContext, responseContext);
+        return headers;
+    }
+
+    private static void setField(Object target, String name, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    @Produces({ "text/html", "application/xhtml+xml" })
+    public static class SomeController {
+
+        @View("view.jsp")
+        public void voidMethod() {
+        }
+
+        public String stringMethod() {
+            return "view.jsp";
+        }
+
+        public Viewable viewableMethod() {
+            return new Viewable("view.jsp");
+        }
+
+        @Produces("text/html")
+        public String singleMethod() {
+            return "view.jsp";
+        }
+    }
+}
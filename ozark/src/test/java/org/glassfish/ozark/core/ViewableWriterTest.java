@@ -40,12 +40,18 @@
 package org.glassfish.ozark.core;
 
 import org.easymock.EasyMock;
+import org.glassfish.ozark.Properties;
+import org.glassfish.ozark.cache.PageCache;
 import org.glassfish.ozark.engine.ViewEngineFinder;
+import org.glassfish.ozark.event.MvcEventDispatcher;
 import org.junit.Test;
 
-import javax.enterprise.event.Event;
-import javax.mvc.event.MvcEvent;
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.ws.rs.container.ResourceInfo;
 import javax.ws.rs.core.Configuration;
+import javax.ws.rs.core.HttpHeaders;
 import javax.mvc.Viewable;
 import javax.mvc.engine.ViewEngine;
 import javax.mvc.engine.ViewEngineContext;
@@ -53,17 +59,28 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collection;
 
 import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expectLastCall;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * The JUnit tests for the ViewableWriter class.
@@ -111,7 +128,7 @@ public class ViewableWriterTest {
         requestField.setAccessible(true);
         requestField.set(writer, request);
 
-        Event<MvcEvent> dispatcher = EasyMock.createStrictMock(Event.class);
+        MvcEventDispatcher dispatcher = EasyMock.createStrictMock(MvcEventDispatcher.class);
         Field dispatcherField = writer.getClass().getDeclaredField("dispatcher");
         dispatcherField.setAccessible(true);
         dispatcherField.set(writer, dispatcher);
@@ -123,7 +140,12 @@ public class ViewableWriterTest {
         responseField.setAccessible(true);
         responseField.set(writer, response);
 
-        Configuration config = EasyMock.createStrictMock(Configuration.class);
+        ResourceInfo resourceInfo = EasyMock.createStrictMock(ResourceInfo.class);
+        Field resourceInfoField = writer.getClass().getDeclaredField("resourceInfo");
+        resourceInfoField.setAccessible(true);
+        resourceInfoField.set(writer, resourceInfo);
+
+        Configuration config = EasyMock.createNiceMock(Configuration.class);
         Field configField = writer.getClass().getDeclaredField("config");
         configField.setAccessible(true);
         configField.set(writer, config);
@@ -136,11 +158,185 @@ public class ViewableWriterTest {
         Viewable viewable = new Viewable("myview");
         viewable.setModels(new ModelsImpl());
 
+        expect(request.getAttribute(PageCache.PAGE_KEY)).andReturn(null);
         expect(finder.find(anyObject())).andReturn(viewEngine);
+        expect(resourceInfo.getResourceClass()).andReturn((Class) Object.class);
+        expect(resourceInfo.getResourceMethod()).andReturn(Object.class.getMethod("toString"));
+        expect(resourceInfo.getResourceMethod()).andStubReturn(Object.class.getMethod("toString"));
         viewEngine.processView((ViewEngineContext) anyObject());
 
-        replay(finder, request, viewEngine, response);
-        writer.writeTo(viewable, null, null, new Annotation[] {}, MediaType.WILDCARD_TYPE, map, null);
-        verify(finder, request, viewEngine, response);
+        replay(finder, request, viewEngine, response, resourceInfo, config);
+        writer.writeTo(viewable, null, null, new Annotation[] {}, MediaType.WILDCARD_TYPE, map, new ByteArrayOutputStream());
+        verify(finder, request, viewEngine, response, resourceInfo);
+
+        // View output is returned to the writer's pool, not kept by the thread
+        Field outputsField = writer.getClass().getDeclaredField("viewOutputs");
+        outputsField.setAccessible(true);
+        assertEquals(1, ((Collection<?>) outputsField.get(writer)).size());
+    }
+
+    /**
+     * Test that the asynchronous context is completed and the buffer released if
+     * the write listener cannot be registered.
+     *
+     * @throws Exception when a serious error occurs.
+     */
+    @Test
+    public void testWriteAsyncError() throws Exception {
+        ViewableWriter writer = new ViewableWriter();
+
+        HttpServletRequest request = EasyMock.createStrictMock(HttpServletRequest.class);
+        Field requestField = writer.getClass().getDeclaredField("request");
+        requestField.setAccessible(true);
+        requestField.set(writer, request);
+
+        HttpServletResponse response = EasyMock.createStrictMock(HttpServletResponse.class);
+        Field responseField = writer.getClass().getDeclaredField("response");
+        responseField.setAccessible(true);
+        responseField.set(writer, response);
+
+        AsyncContext asyncContext = EasyMock.createStrictMock(AsyncContext.class);
+        ServletOutputStream servletStream = EasyMock.createStrictMock(ServletOutputStream.class);
+
+        response.flushBuffer();
+        expect(request.startAsync()).andReturn(asyncContext);
+        expect(response.getOutputStream()).andReturn(servletStream);
+        servletStream.setWriteListener(anyObject(WriteListener.class));
+        expectLastCall().andThrow(new IllegalStateException());
+        asyncContext.complete();
+
+        RenderBuffer renderBuffer = new RenderBuffer(0);
+        renderBuffer.write(new byte[] { 1, 2, 3 });
+
+        replay(request, response, asyncContext, servletStream);
+        Method method = writer.getClass().getDeclaredMethod("writeAsync", RenderBuffer.class,
+                MultivaluedMap.class, OutputStream.class);
+        method.setAccessible(true);
+        try {
+            method.invoke(writer, renderBuffer, new MultivaluedHashMap<String, Object>(), new ByteArrayOutputStream());
+            fail();
+        } catch (InvocationTargetException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        verify(request, response, asyncContext, servletStream);
+        assertEquals(0, renderBuffer.size());
+    }
+
+    /**
+     * Test that views not produced by a resource method, such as those of exception
+     * mappers for unmatched requests, use the asynchronous write property.
+     *
+     * @throws Exception when a serious error occurs.
+     */
+    @Test
+    public void testIsAsyncWriteNoResourceMethod() throws Exception {
+        ViewableWriter writer = new ViewableWriter();
+
+        HttpServletRequest request = EasyMock.createStrictMock(HttpServletRequest.class);
+        Field requestField = writer.getClass().getDeclaredField("request");
+        requestField.setAccessible(true);
+        requestField.set(writer, request);
+
+        ResourceInfo resourceInfo = EasyMock.createNiceMock(ResourceInfo.class);
+        Field resourceInfoField = writer.getClass().getDeclaredField("resourceInfo");
+        resourceInfoField.setAccessible(true);
+        resourceInfoField.set(writer, resourceInfo);
+
+        Configuration config = EasyMock.createStrictMock(Configuration.class);
+        Field configField = writer.getClass().getDeclaredField("config");
+        configField.setAccessible(true);
+        configField.set(writer, config);
+
+        expect(config.getProperty(Properties.ASYNC_WRITE)).andReturn(true);
+        expect(request.isAsyncSupported()).andReturn(true);
+
+        replay(request, resourceInfo, config);
+        Method method = writer.getClass().getDeclaredMethod("isAsyncWrite", MultivaluedMap.class);
+        method.setAccessible(true);
+        assertTrue((Boolean) method.invoke(writer, new MultivaluedHashMap<String, Object>()));
+        verify(request, config);
+    }
+
+    /**
+     * Test that views of successful responses are tagged and can be answered with 304.
+     *
+     * @throws Exception when a serious error occurs.
+     */
+    @Test
+    public void testETag() throws Exception {
+        HttpServletResponse response = EasyMock.createStrictMock(HttpServletResponse.class);
+        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        response.addHeader(eq(HttpHeaders.ETAG), anyObject(String.class));
+        response.flushBuffer();
+        MultivaluedMap<String, Object> headers = writeTagged(response, true);
+        assertNotNull(headers.getFirst(HttpHeaders.ETAG));
+    }
+
+    /**
+     * Test that error views, e.g. those of exception mappers, are neither tagged nor
+     * answered with 304, even if If-None-Match is {@code *}.
+     *
+     * @throws Exception when a serious error occurs.
+     */
+    @Test
+    public void testETagErrorView() throws Exception {
+        HttpServletResponse response = EasyMock.createStrictMock(HttpServletResponse.class);
+        MultivaluedMap<String, Object> headers = writeTagged(response, false);
+        assertNull(headers.getFirst(HttpHeaders.ETAG));
+    }
+
+    private static MultivaluedMap<String, Object> writeTagged(HttpServletResponse response, boolean successful)
+            throws Exception {
+        ViewableWriter writer = new ViewableWriter();
+
+        ViewEngine viewEngine = EasyMock.createNiceMock(ViewEngine.class);
+        ViewEngineFinder finder = EasyMock.createNiceMock(ViewEngineFinder.class);
+        expect(finder.find(anyObject())).andReturn(viewEngine);
+        setField(writer, "engineFinder", finder);
+
+        HttpServletRequest request = EasyMock.createNiceMock(HttpServletRequest.class);
+        expect(request.getAttribute(ViewableWriter.SUCCESSFUL)).andStubReturn(successful ? Boolean.TRUE : null);
+        expect(request.getMethod()).andStubReturn("GET");
+        expect(request.getHeader(HttpHeaders.IF_NONE_MATCH)).andStubReturn("*");
+        setField(writer, "request", request);
+
+        Configuration config = EasyMock.createNiceMock(Configuration.class);
+        expect(config.getProperty(Properties.ETAG)).andStubReturn(true);
+        setField(writer, "config", config);
+
+        setField(writer, "response", response);
+        ResourceInfo resourceInfo = EasyMock.createNiceMock(ResourceInfo.class);
+        setField(writer, "resourceInfo", resourceInfo);
+        setField(writer, "dispatcher", EasyMock.createNiceMock(MvcEventDispatcher.class));
+
+        Viewable viewable = new Viewable("myview");
+        viewable.setModels(new ModelsImpl());
+        MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+        headers.putSingle(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_HTML_TYPE);
+
+        replay(finder, viewEngine, request, config, resourceInfo, response);
+        writer.writeTo(viewable, null, null, new Annotation[] {}, MediaType.TEXT_HTML_TYPE, headers,
+                new ByteArrayOutputStream());
+        verify(response);
+        return headers;
+    }
+
+    private static void setField(Object target, String name, Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    /**
+     * Test matching of If-None-Match headers.
+     */
+    @Test
+    public void testMatchesETag() {
+        String tag = "\"1234abcd\"";
+        assertFalse(ViewableWriter.matchesETag(null, tag));
+        assertTrue(ViewableWriter.matchesETag(tag, tag));
+        assertTrue(ViewableWriter.matchesETag("\"ff\", W/" + tag, tag));
+        assertTrue(ViewableWriter.matchesETag("*", tag));
+        assertFalse(ViewableWriter.matchesETag("\"1234abce\"", tag));
     }
 }
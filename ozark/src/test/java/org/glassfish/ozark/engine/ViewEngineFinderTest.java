@@ -0,0 +1,133 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.engine;
+
+import org.easymock.EasyMock;
+import org.glassfish.ozark.util.CdiUtils;
+import org.junit.Test;
+
+import javax.mvc.Viewable;
+import javax.mvc.engine.ViewEngine;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * The JUnit tests for the ViewEngineFinder class.
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+public class ViewEngineFinderTest {
+
+    private final ViewEngine jsp = EasyMock.createMock(ViewEngine.class);
+
+    private final List<String> selected = new ArrayList<>();
+
+    private final ViewEngineFinder finder = new ViewEngineFinder() {
+        @Override
+        ViewEngine select(String view) {
+            selected.add(view);
+            return view.endsWith(".jsp") ? jsp : null;
+        }
+    };
+
+    /**
+     * Test caching of selected engines and of views without engine.
+     */
+    @Test
+    public void testCache() {
+        assertSame(jsp, finder.find(new Viewable("a.jsp")));
+        assertSame(jsp, finder.find(new Viewable("a.jsp")));
+        assertNull(finder.find(new Viewable("a.txt")));
+        assertNull(finder.find(new Viewable("a.txt")));
+        assertEquals(2, selected.size());
+        assertEquals(2, finder.getCacheHits());
+        assertEquals(2, finder.getCacheMisses());
+        assertEquals(0, finder.getCacheEvictions());
+    }
+
+    /**
+     * Test that the cache is bounded and keeps recently used views.
+     *
+     * @throws Exception when a serious error occurs.
+     */
+    @Test
+    public void testEvict() throws Exception {
+        Field field = ViewEngineFinder.class.getDeclaredField("maxEntries");
+        field.setAccessible(true);
+        field.set(finder, 2);
+        finder.find(new Viewable("a.jsp"));
+        finder.find(new Viewable("b.jsp"));
+        finder.find(new Viewable("a.jsp"));
+        finder.find(new Viewable("c.jsp"));
+        assertEquals(1, finder.getCacheEvictions());
+        finder.find(new Viewable("a.jsp"));
+        finder.find(new Viewable("c.jsp"));
+        assertEquals(3, finder.getCacheHits());
+        assertEquals(3, selected.size());
+    }
+
+    /**
+     * Test that engines specified by a viewable are resolved once per class.
+     *
+     * @throws Exception when a serious error occurs.
+     */
+    @Test
+    public void testViewableEngine() throws Exception {
+        CdiUtils cdiUtils = EasyMock.createStrictMock(CdiUtils.class);
+        Field field = ViewEngineFinder.class.getDeclaredField("cdiUtils");
+        field.setAccessible(true);
+        field.set(finder, cdiUtils);
+        expect(cdiUtils.newBeanSupplier(ViewEngine.class)).andReturn(() -> jsp);
+        replay(cdiUtils);
+
+        assertSame(jsp, finder.find(new Viewable("a.txt", ViewEngine.class)));
+        assertSame(jsp, finder.find(new Viewable("b.txt", ViewEngine.class)));
+        verify(cdiUtils);
+        assertEquals(0, selected.size());
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.engine;
+
+import org.glassfish.ozark.annotation.ViewSuffix;
+import org.junit.Test;
+
+import javax.annotation.Priority;
+import javax.mvc.engine.Priorities;
+import javax.mvc.engine.ViewEngine;
+import javax.mvc.engine.ViewEngineContext;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * The JUnit tests for the ViewEngineIndex class.
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+public class ViewEngineIndexTest {
+
+    /**
+     * Test selection by suffix, by priority and using supports().
+     */
+    @Test
+    public void testSelect() {
+        HtmlEngine html = new HtmlEngine();
+        HtmlOverride override = new HtmlOverride();
+        ScriptEngine script = new ScriptEngine();
+        ViewEngineIndex index = new ViewEngineIndex(Arrays.asList(html, override, script));
+
+        assertSame(html, index.select("index.html"));
+        assertSame(html, index.select("dir.v1/index.html"));
+        assertSame(override, index.select("index.page.html"));
+        assertSame(script, index.select("index.js"));
+        assertNull(index.select("index.txt"));
+        assertNull(index.select("index"));
+        assertEquals(3, script.calls);
+    }
+
+    /**
+     * Test that engines without suffixes are not asked when an engine with a
+     * higher priority supports the view.
+     */
+    @Test
+    public void testPriority() {
+        HtmlOverride override = new HtmlOverride();
+        ScriptEngine script = new ScriptEngine();
+        ViewEngineIndex index = new ViewEngineIndex(Arrays.asList(script, override));
+        assertSame(override, index.select("index.page.html"));
+        assertEquals(0, script.calls);
+    }
+
+    private static abstract class TestEngine implements ViewEngine {
+
+        int calls;
+
+        @Override
+        public boolean supports(String view) {
+            calls++;
+            return false;
+        }
+
+        @Override
+        public void processView(ViewEngineContext context) {
+        }
+    }
+
+    @ViewSuffix({".html", ".htm"})
+    private static class HtmlEngine extends TestEngine {
+    }
+
+    @ViewSuffix(".page.html")
+    @Priority(Priorities.FRAMEWORK)
+    private static class HtmlOverride extends TestEngine {
+    }
+
+    private static class ScriptEngine extends TestEngine {
+
+        @Override
+        public boolean supports(String view) {
+            calls++;
+            return view.endsWith(".js");
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2015 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * http://glassfish.java.net/public/CDDL+GPL_1_1.html
+ * or packager/legal/LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at packager/legal/LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.ozark.event;
+
+import org.easymock.EasyMock;
+import org.glassfish.ozark.Properties;
+import org.glassfish.ozark.cdi.RedirectScopeManager;
+import org.junit.After;
+import org.junit.Test;
+
+import javax.enterprise.event.Reception;
+import javax.enterprise.event.TransactionPhase;
+import javax.enterprise.inject.spi.BeanManager;
+import javax.enterprise.inject.spi.ObserverMethod;
+import javax.mvc.event.MvcEvent;
+import javax.ws.rs.core.Configuration;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The JUnit tests for the MvcEventDispatcher class.
+ *
+ * @author Santiago Pericas-Geertsen
+ */
+public class MvcEventDispatcherTest {
+
+    private MvcEventDispatcher dispatcher;
+
+    @After
+    public void tearDown() {
+        if (dispatcher != null) {
+            dispatcher.destroy();
+        }
+    }
+
+    /**
+     * Test that synchronous observers get the original event on the calling thread,
+     * and other observers get it in the background.
+     *
+     * @throws Exception when a serious error occurs.
+     */
+    @Test
+    public void testAsync() throws Exception {
+        final Thread caller = Thread.currentThread();
+        final Thread[] inlineThread = new Thread[1];
+        final CountDownLatch delivered = new CountDownLatch(1);
+        final Thread[] asyncThread = new Thread[1];
+        final BeforeProcessViewEventImpl event = new BeforeProcessViewEventImpl();
+
+        dispatcher = dispatcher(1, 10, "drop",
+                new TestObserver(RedirectScopeManager.class, e -> {
+                    assertSame(event, e);
+                    inlineThread[0] = Thread.currentThread();
+                }),
+                new TestObserver(Object.class, e -> {
+                    asyncThread[0] = Thread.currentThread();
+                    delivered.countDown();
+                }));
+        assertTrue(dispatcher.isAsync());
+
+        dispatcher.fire(event);
+        assertSame(caller, inlineThread[0]);
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        assertTrue(asyncThread[0] != caller);
+        assertEquals(1, dispatcher.getQueuedEvents());
+        assertEquals(0, dispatcher.getDroppedEvents());
+    }
+
+    /**
+     * Test that events are dropped when the queue is full.
+     *
+     * @throws Exception when a serious error occurs.
+     */
+    @Test
+    public void testDrop() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        dispatcher = dispatcher(1, 1, "drop", new TestObserver(Object.class, e -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+
+        dispatcher.fire(new AfterProcessViewEventImpl());
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        dispatcher.fire(new AfterProcessViewEventImpl());     // queued
+        dispatcher.fire(new AfterProcessViewEventImpl());     // dropped
+        release.countDown();
+
+        assertEquals(2, dispatcher.getQueuedEvents());
+        assertEquals(1, dispatcher.getDroppedEvents());
+    }
+
+    private static MvcEventDispatcher dispatcher(int threads, int queueSize, String overflow,
+                                                 ObserverMethod<?>... observers) throws Exception {
+        final Configuration config = EasyMock.createNiceMock(Configuration.class);
+        expect(config.getProperty(Properties.ASYNC_EVENTS)).andReturn(true);
+        expect(config.getProperty(Properties.ASYNC_EVENTS_THREADS)).andReturn(threads);
+        expect(config.getProperty(Properties.ASYNC_EVENTS_QUEUE_SIZE)).andReturn(queueSize);
+        expect(config.getProperty(Properties.ASYNC_EVENTS_OVERFLOW)).andReturn(overflow);
+
+        final Set<ObserverMethod<?>> resolved = new LinkedHashSet<>();
+        Collections.addAll(resolved, observers);
+        final BeanManager beanManager = EasyMock.createNiceMock(BeanManager.class);
+        expect(beanManager.resolveObserverMethods(anyObject())).andReturn((Set) resolved).anyTimes();
+        replay(config, beanManager);
+
+        final MvcEventDispatcher dispatcher = new MvcEventDispatcher();
+        set(dispatcher, "config", config);
+        set(dispatcher, "beanManager", beanManager);
+        dispatcher.init();
+        return dispatcher;
+    }
+
+    private static void set(Object target, String name, Object value) throws Exception {
+        final Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    private static class TestObserver implements ObserverMethod<MvcEvent> {
+
+        private final Class<?> beanClass;
+
+        private final Consumer<MvcEvent> consumer;
+
+        TestObserver(Class<?> beanClass, Consumer<MvcEvent> consumer) {
+            this.beanClass = beanClass;
+            this.consumer = consumer;
+        }
+
+        @Override
+        public Class<?> getBeanClass() {
+            return beanClass;
+        }
+
+        @Override
+        public Type getObservedType() {
+            return MvcEvent.class;
+        }
+
+        @Override
+        public Set<Annotation> getObservedQualifiers() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public Reception getReception() {
+            return Reception.ALWAYS;
+        }
+
+        @Override
+        public TransactionPhase getTransactionPhase() {
+            return TransactionPhase.IN_PROGRESS;
+        }
+
+        @Override
+        public void notify(MvcEvent event) {
+            consumer.accept(event);
+        }
+    }
+}
@@ -49,6 +49,7 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.container.ResourceInfo;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Variant;
 import java.text.ParseException;
 import java.util.Arrays;
 import java.util.Collections;
@@ -58,6 +59,7 @@ import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
 import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 
 /**
@@ -134,6 +136,38 @@ public class VariantSelectorTest {
 		verify(resourceInfo, request);
 	}
 
+	@Test
+	public void selectEncoding() {
+		HttpServletRequest request = EasyMock.createNiceMock(HttpServletRequest.class);
+		expect(request.getHeader(HttpHeaders.ACCEPT_ENCODING)).andReturn(null);
+		expect(request.getHeader(HttpHeaders.ACCEPT_ENCODING)).andReturn("gzip, deflate").times(2);
+		expect(request.getHeader(HttpHeaders.ACCEPT_ENCODING)).andReturn("deflate, gzip;q=0.5").times(2);
+		expect(request.getHeader(HttpHeaders.ACCEPT_ENCODING)).andReturn("gzip;q=0, *").times(2);
+		expect(request.getHeader(HttpHeaders.ACCEPT_ENCODING)).andReturn("br").times(2);
+		replay(request);
+		assertThat(VariantSelector.selectEncoding(request, "gzip", "deflate"), is((String) null));
+		assertThat(VariantSelector.selectEncoding(request, "gzip", "deflate"), is("gzip"));
+		assertThat(VariantSelector.selectEncoding(request, "gzip", "deflate"), is("deflate"));
+		assertThat(VariantSelector.selectEncoding(request, "gzip", "deflate"), is("deflate"));
+		assertThat(VariantSelector.selectEncoding(request, "gzip", "deflate"), is((String) null));
+		verify(request);
+	}
+
+	@Test
+	public void select() {
+		List<Variant> variants = Variant.mediaTypes(MediaType.APPLICATION_XHTML_XML_TYPE, MediaType.APPLICATION_XML_TYPE).build();
+		HttpServletRequest request = EasyMock.createNiceMock(HttpServletRequest.class);
+		expect(request.getHeader(HttpHeaders.ACCEPT)).andReturn("text/html, application/xhtml+xml, application/xml;q=0.9, */*;q=0.8").times(3);
+		expect(request.getHeader(HttpHeaders.ACCEPT)).andReturn("application/xml").times(2);
+		replay(request);
+		VariantSelector.Selection selection = VariantSelector.select(request, variants);
+		assertThat(selection.getMediaType(), is(MediaType.APPLICATION_XHTML_XML_TYPE));
+		assertThat(selection.getVary(), is(Collections.singleton(HttpHeaders.ACCEPT)));
+		assertSame(selection, VariantSelector.select(request, variants));
+		assertThat(VariantSelector.select(request, variants).getMediaType(), is(MediaType.APPLICATION_XML_TYPE));
+		verify(request);
+	}
+
 	private static class SomeController {
 		@Produces("text/html") public void method1() {}
 		@Produces({"application/json", "application/xml"}) public void method2() {}
@@ -39,6 +39,8 @@
  */
 package org.glassfish.ozark.test.freemarker;
 
+import org.glassfish.ozark.annotation.AsyncWrite;
+
 import javax.inject.Inject;
 import javax.mvc.annotation.Controller;
 import javax.mvc.Models;
@@ -47,6 +49,8 @@ import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * HelloController test.
@@ -66,4 +70,15 @@ public class HelloController {
     public void hello(@QueryParam("user") String user) {
         models.put("user", user);
     }
+
+    @GET
+    @Controller
+    @AsyncWrite
+    @Path("async")
+    @Produces("text/html")
+    @View("async.ftl")
+    public void async(@QueryParam("user") String user, @QueryParam("count") int count) {
+        models.put("user", user);
+        models.put("items", IntStream.range(0, count).boxed().collect(Collectors.toList()));
+    }
 }
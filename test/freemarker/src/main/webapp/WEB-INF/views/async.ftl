@@ -0,0 +1,14 @@
+<html>
+    <head>
+      <title>Hello There</title>
+        <link rel="stylesheet" type="text/css" href="${mvc.contextPath}/ozark.css"/>
+    </head>
+    <body>
+      <h1>Hello ${user?html}!</h1>
+      <ul>
+      <#list items as item>
+        <li>Item ${item?c}</li>
+      </#list>
+      </ul>
+    </body>
+</html>
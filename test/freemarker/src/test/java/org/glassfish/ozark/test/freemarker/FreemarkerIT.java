@@ -48,6 +48,7 @@ import org.junit.Test;
 
 import java.util.Iterator;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 public class FreemarkerIT {
@@ -72,4 +73,14 @@ public class FreemarkerIT {
         final Iterator<HtmlElement> it = page.getDocumentElement().getHtmlElementsByTagName("h1").iterator();
         assertTrue(it.next().asText().contains("mvc"));
     }
+
+    @Test
+    public void testAsyncWrite() throws Exception {
+        final HtmlPage page = webClient.getPage(webUrl + "resources/hello/async?user=mvc&count=10000");
+        final Iterator<HtmlElement> it = page.getDocumentElement().getHtmlElementsByTagName("h1").iterator();
+        assertTrue(it.next().asText().contains("mvc"));
+        assertEquals(10000, page.getDocumentElement().getHtmlElementsByTagName("li").size());
+        assertEquals(String.valueOf(page.getWebResponse().getContentAsString().getBytes("UTF-8").length),
+                page.getWebResponse().getResponseHeaderValue("Content-Length"));
+    }
 }